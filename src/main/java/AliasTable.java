@@ -0,0 +1,87 @@
+import java.util.SplittableRandom;
+
+/**
+ * Draws indices from a fixed discrete distribution in constant time, using Vose's alias method.
+ * <p>
+ * Building the table takes time linear in the number of outcomes. Each draw then takes one random index and one
+ * random double, no matter how many outcomes there are or how skewed their weights are.
+ */
+public final class AliasTable {
+    private final double[] probability; // chance of keeping column i rather than taking its alias
+    private final int[] alias; // outcome taking up the rest of column i
+
+    /**
+     * Constructor.
+     *
+     * @param weights Relative weights of the outcomes. Must be non-negative with a positive sum.
+     */
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        double total = 0;
+        for (double weight : weights) {
+            if (weight < 0 || Double.isNaN(weight)) {
+                throw new IllegalArgumentException("Invalid weight " + weight);
+            }
+            total += weight;
+        }
+        if (n == 0 || !(total > 0) || Double.isInfinite(total)) {
+            throw new IllegalArgumentException("Weights must have a positive, finite sum");
+        }
+
+        probability = new double[n];
+        alias = new int[n];
+
+        // Scale the weights so the average column holds exactly 1, then let every under-full column borrow
+        // the rest of its space from an over-full one.
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // Whatever is left is full up to rounding error.
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1;
+        }
+    }
+
+    /**
+     * @return The number of outcomes.
+     */
+    public int size() {
+        return probability.length;
+    }
+
+    /**
+     * Draws an outcome.
+     *
+     * @param random Random stream to draw from.
+     * @return Index of the outcome drawn, with probability proportional to its weight.
+     */
+    public int sample(SplittableRandom random) {
+        int column = random.nextInt(probability.length);
+        return (random.nextDouble() < probability[column]) ? column : alias[column];
+    }
+}
@@ -14,7 +14,7 @@ import javafx.util.Duration;
  */
 public class ApplicationController {
 
-    protected static GameModel model; // manages all of the game data.
+    protected GameModel model; // manages all of the game data of this screen's session.
 
     /**
      * Makes the dialogue inside the textbox seem like the person's talking. Also disables the Next button
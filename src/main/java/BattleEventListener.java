@@ -0,0 +1,73 @@
+/**
+ * Receives the events of a battle as they happen, so each view can describe them in its own way.
+ * The engine never prints anything itself.
+ * <p>
+ * Every method does nothing by default, so listeners only override the events they care about,
+ * and NONE costs nothing beyond the call.
+ */
+public interface BattleEventListener {
+
+    /**
+     * Listener that ignores every event. Used by headless battles.
+     */
+    BattleEventListener NONE = new BattleEventListener() {
+    };
+
+    /**
+     * The stats that cards can temporarily raise.
+     */
+    enum Stat {
+        DEFENSE, SHIELD, STRENGTH
+    }
+
+    /**
+     * Called after a card has dealt damage.
+     *
+     * @param user     Being that played the card
+     * @param target   Being that took the damage
+     * @param card     Card that was played
+     * @param forecast What the card did, computed just before: defense and shield mitigation, damage and overkill
+     */
+    default void damageDealt(Being user, Being target, Card card, DamageForecast forecast) {
+    }
+
+    /**
+     * Called after a card has taken away all of the target's shield.
+     *
+     * @param user   Being that played the card
+     * @param target Being whose shield was broken
+     * @param card   Card that was played
+     */
+    default void shieldBroken(Being user, Being target, Card card) {
+    }
+
+    /**
+     * Called after a card has raised one of the user's stats.
+     *
+     * @param being  Being whose stat was raised
+     * @param card   Card that was played
+     * @param stat   Stat that was raised
+     * @param amount How much the stat was raised by
+     */
+    default void buffApplied(Being being, Card card, Stat stat, int amount) {
+    }
+
+    /**
+     * Called after some or all of one of a being's stats has worn off.
+     *
+     * @param being  Being whose stat wore off
+     * @param stat   Stat that wore off
+     * @param amount How much of the stat wore off
+     */
+    default void buffWoreOff(Being being, Stat stat, int amount) {
+    }
+
+    /**
+     * Called after a single use card has been set aside for the rest of the battle.
+     *
+     * @param user Being that played the card
+     * @param card Card that was set aside
+     */
+    default void cardExhausted(Being user, Card card) {
+    }
+}
@@ -17,35 +17,86 @@ import java.util.*;
  * - - enemiesTurn
  * - - postTurn
  * - postGame
+ * <p>
+ * All randomness in a battle (shuffles, enemy moves, gold and card drops) comes from a single seeded stream,
+ * so a battle can be reproduced from its seed and the player's inputs.
+ * <p>
+ * Everything that happens to the beings is reported to the battle's BattleEventListener rather than printed.
+ * <p>
+ * Use snapshot and restore to branch a battle, e.g. to try out a line of play and roll it back.
+ * <p>
+ * A battle keeps the Catalog that was current when it was created, so reloading the catalog only affects new
+ * battles.
+ * <p>
+ * Use startRecording to record a battle played straight through, so it can be replayed from its seed (see
+ * BattleReplay). Branch on a copy instead of with snapshot and restore when recording.
  */
 public class BattleManager {
     private Player player; // the player to battle.
     private List<Enemy> enemies; // the enemies to battle.
+    private final List<Enemy> enemiesView; // read-only view of enemies.
+    private final List<Enemy> roster; // every enemy that started the battle, alive or not.
     private int turn; // the current turn number.
-    private Set<Card> possibleCardDrops; // the card drops from all the enemies combined.
+    private final long seed; // the seed of this battle's random stream.
+    private final SplittableRandom random; // the source of all randomness in this battle.
+    private final SplittableRandom lootRandom; // the split of random the loot is rolled from.
+    private final Catalog catalog; // the cards and enemies this battle is played with.
+    private BattleRecorder recorder; // records the player's commands, null if not recording.
+
+    // getEnemyIntents and getCurrentStats are rebuilt only when the alive enemies or their moves have changed.
+    private int version; // bumped whenever the alive enemies or their moves change.
+    private Map<Enemy, List<Card>> intents; // the last result of getEnemyIntents, null if not yet built.
+    private int intentsVersion; // the version intents was built at.
+    private TurnStat stats; // the last result of getCurrentStats, null if not yet built.
+    private int statsVersion; // the version stats was built at.
 
     // contains exactly one element: the Player. This is necessary/efficient due to the way ActionSummary is structured
     private final List<Being> listWithOnlyPlayer;
 
     /**
-     * Constructor.
+     * Constructor. Uses a randomly chosen seed.
      *
      * @param player  Player
      * @param enemies List of Enemies on the battlefield
      */
     public BattleManager(Player player, List<Enemy> enemies) {
+        this(player, enemies, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param player  Player
+     * @param enemies List of Enemies on the battlefield
+     * @param seed    Seed for all of the randomness in this battle
+     */
+    public BattleManager(Player player, List<Enemy> enemies, long seed) {
         this.player = player;
         this.enemies = enemies;
+        enemiesView = Collections.unmodifiableList(enemies);
         assert player != null;
         assert !enemies.isEmpty();
+        roster = new ArrayList<>(enemies);
 
         turn = 1;
-        possibleCardDrops = new HashSet<>();
+        catalog = Catalog.getCurrent();
+
+        // Every being gets its own split of the stream, in battlefield order, so the player's shuffles
+        // do not depend on how many random numbers the enemies have used and vice versa.
+        this.seed = seed;
+        random = new SplittableRandom(seed);
+        player.setRandom(random.split());
+        for (Enemy enemy : enemies) {
+            enemy.setRandom(random.split());
+        }
+        // The loot gets its own split too, so the drops do not depend on the random choices clients make.
+        lootRandom = random.split();
+        setEventListener(BattleEventListener.NONE);
 
         if (enemies.size() > 1) {
             int n = 0;
             for (Enemy enemy : enemies) {
-                enemy.addToName(" (" + (++n) + ")");
+                enemy.setNumber(++n);
             }
         }
 
@@ -53,13 +104,122 @@ public class BattleManager {
         listWithOnlyPlayer.add(player);
     }
 
+    /**
+     * Copy constructor. See copy.
+     */
+    private BattleManager(BattleManager other, long seed) {
+        player = new Player(other.player);
+        roster = new ArrayList<>(other.roster.size());
+        enemies = new ArrayList<>(other.enemies.size());
+        for (Enemy enemy : other.roster) {
+            Enemy copy = new Enemy(enemy);
+            roster.add(copy);
+            if (other.enemies.contains(enemy)) {
+                enemies.add(copy);
+            }
+        }
+        enemiesView = Collections.unmodifiableList(enemies);
+        turn = other.turn;
+        catalog = other.catalog;
+        listWithOnlyPlayer = new ArrayList<>(1);
+        listWithOnlyPlayer.add(player);
+
+        this.seed = seed;
+        random = new SplittableRandom(seed);
+        player.setRandom(random.split());
+        for (Enemy enemy : roster) {
+            enemy.setRandom(random.split());
+        }
+        lootRandom = random.split();
+    }
+
+    /**
+     * Creates an independent copy of this battle, with copies of the player and the enemies, that can be played on
+     * without affecting this battle. The copy reports its events to nobody.
+     * Useful for searching ahead on another thread; use snapshot and restore to branch on the same thread.
+     *
+     * @param seed Seed of the copy's random stream.
+     * @return Copy of this battle in its current state.
+     */
+    public BattleManager copy(long seed) {
+        return new BattleManager(this, seed);
+    }
+
+    /**
+     * @return Read-only list of every enemy that started the battle, alive or not, in battlefield order.
+     */
+    public List<Enemy> getRoster() {
+        return Collections.unmodifiableList(roster);
+    }
+
+    /**
+     * @return The player in this battle.
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * Starts recording this battle: the player's commands from now on, each end of turn, and the outcome. Must be
+     * called before start. Copies of this battle are not recorded.
+     *
+     * @return The recorder, whose getReplay returns the battle once postGame has been called.
+     */
+    public BattleRecorder startRecording() {
+        if (recorder == null) {
+            recorder = new BattleRecorder(seed, player, roster);
+        }
+        return recorder;
+    }
+
+    /**
+     * @return The recorder of this battle, or null if it is not being recorded.
+     */
+    public BattleRecorder getRecorder() {
+        return recorder;
+    }
+
     /**
      * Sets up the player's and enemies' decks. Must be called after the constructor and before any other methods.
      */
     public void start() {
-        player.initializeDeck();
+        player.initializeDeck(catalog);
         for (Enemy enemy : enemies) {
-            enemy.initializeDeck();
+            enemy.initializeDeck(catalog);
+        }
+    }
+
+    /**
+     * @return The catalog this battle is played with: the one that was current when it was created.
+     */
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return The seed this battle's randomness was generated from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The random stream of this battle. Clients making random choices on behalf of the player
+     * should draw from this so the whole battle stays reproducible from its seed.
+     */
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Sets the listener told about everything the player and the enemies do in this battle.
+     *
+     * @param listener the listener, BattleEventListener.NONE to ignore events.
+     */
+    public void setEventListener(BattleEventListener listener) {
+        player.setEventListener(listener);
+        for (Enemy enemy : enemies) {
+            enemy.setEventListener(listener);
         }
     }
 
@@ -74,16 +234,39 @@ public class BattleManager {
     }
 
     /**
+     * Returns the same TurnStat as the last call as long as the turn and the alive enemies are the same.
+     *
      * @return TurnStat representing battle stat at the beginning of this turn.
      */
     public TurnStat getCurrentStats() {
-        return new TurnStat(turn, player, new ArrayList<>(enemies));
+        if (stats == null || stats.getTurn() != turn || statsVersion != version) {
+            stats = new TurnStat(turn, player, Collections.unmodifiableList(new ArrayList<>(enemies)));
+            statsVersion = version;
+        }
+        return stats;
+    }
+
+    /**
+     * @return The number of turns played so far.
+     */
+    public int getTurn() {
+        return turn;
     }
 
     /**
-     * @return List of alive enemies.
+     * Returns a read-only view that always shows the enemies alive at the time, so polling it allocates nothing.
+     * Killing an enemy removes it from the view, so use copyEnemies to iterate while playing cards.
+     *
+     * @return Read-only view of the alive enemies, in battlefield order.
      */
     public List<Enemy> getEnemies() {
+        return enemiesView;
+    }
+
+    /**
+     * @return Copy of the list of alive enemies, in battlefield order.
+     */
+    public List<Enemy> copyEnemies() {
         return new ArrayList<>(enemies);
     }
 
@@ -101,12 +284,17 @@ public class BattleManager {
      * IMPORTANT: the client of this method must NOT execute cardPlayed.playCard.
      *
      * @param cardPlayed Card in the player's action deck with sufficient action points
-     * @param target     Enemy to attack (may be null for defensive or attack all cards)
+     * @param target     Alive enemy to attack; for defensive or attack all cards any alive enemy, since it is only
+     *                   recorded, not used
      * @return ActionSummary representing result of this action
      */
     public ActionSummary playerAction(Card cardPlayed, Enemy target) {
         assert cardPlayed != null;
-        assert target != null;
+        assert target != null && enemies.contains(target);
+        cardPlayed = catalog.getCard(cardPlayed.getId()); // the battle's version, if the view looked up a newer one
+        if (recorder != null) {
+            recorder.playerAction(cardPlayed.getId(), enemies.indexOf(target));
+        }
 
         List<Being> opponents = new ArrayList<>();
 
@@ -123,15 +311,36 @@ public class BattleManager {
         for (Enemy enemy : enemies) {
             if (enemy.isDead()) {
                 goldGained += enemy.getDroppedGold();
-                possibleCardDrops.addAll(enemy.getCardDrops());
             }
         }
-        enemies.removeIf(Being::isDead);
+        if (enemies.removeIf(Being::isDead)) {
+            version++;
+        }
         player.addGold(goldGained);
 
         return new ActionSummary(cardPlayed, player, opponents, goldGained);
     }
 
+    /**
+     * Forecasts what playerAction would do with the given card and target right now, without changing anything.
+     *
+     * @param card   Card in the player's action deck
+     * @param target Enemy to attack
+     * @return Forecast for every enemy the card would hit: all of them, in battlefield order, if card.isAttackAll(),
+     * otherwise just the target. Empty if the card deals no damage.
+     */
+    public List<DamageForecast> forecast(Card card, Enemy target) {
+        assert target != null;
+        card = catalog.getCard(card.getId());
+        if (card.getDamage() * card.getHits() == 0) {
+            return Collections.emptyList();
+        }
+        if (card.isAttackAll()) {
+            return DamageForecast.of(player, card, enemies);
+        }
+        return Collections.singletonList(card.forecast(player, target));
+    }
+
     /**
      * Resets all enemies' stats and fills their action decks.
      */
@@ -148,12 +357,27 @@ public class BattleManager {
         for (Enemy enemy : enemies) {
             enemy.calculateMove();
         }
+        version++;
     }
 
     /**
+     * Returns the same read-only map as the last call until the enemies plan new moves or one of them dies. Use
+     * copyEnemyIntents for a map of your own.
+     *
      * @return the moves the enemies plan to use this turn. Must be called after preEnemyTurn.
      */
     public Map<Enemy, List<Card>> getEnemyIntents() {
+        if (intents == null || intentsVersion != version) {
+            intents = Collections.unmodifiableMap(copyEnemyIntents());
+            intentsVersion = version;
+        }
+        return intents;
+    }
+
+    /**
+     * @return Copy of the map of the moves the enemies plan to use this turn. See getEnemyIntents.
+     */
+    public Map<Enemy, List<Card>> copyEnemyIntents() {
         Map<Enemy, List<Card>> res = new LinkedHashMap<>();
         for (Enemy enemy : enemies) {
             assert enemy.getMove() != null;
@@ -188,19 +412,103 @@ public class BattleManager {
      */
     public void postTurn() {
         turn++;
+        if (recorder != null) {
+            recorder.endTurn();
+        }
     }
 
     /**
      * Must be called after every game, regardless of whether the player wins or not.
-     * Clears player status effects.
+     * Clears player status effects, and rolls the loot table of every killed enemy, in battlefield order.
      *
      * @return Set of Cards representing the dropped cards by the killed enemies. May be empty.
      */
     public Set<Card> postGame() {
         player.battleEndStatsReset();
-        // removes some cards from the possible drops.
-        possibleCardDrops.removeIf(card -> Math.random() <= GameModel.DROP_CHANCE);
-        return possibleCardDrops;
+        Set<Card> cardDrops = new LinkedHashSet<>();
+        for (Enemy enemy : roster) {
+            if (enemy.isDead()) {
+                enemy.getLootTable().rollCards(lootRandom, id -> cardDrops.add(catalog.getCard(id)));
+            }
+        }
+        if (recorder != null) {
+            recorder.finish(this, cardDrops);
+        }
+        return cardDrops;
+    }
+
+    /**
+     * Captures the current state of the battle. Must be called after start.
+     *
+     * @return Snapshot that restore can roll this battle back to.
+     */
+    public BattleState snapshot() {
+        return snapshot(null);
+    }
+
+    /**
+     * Captures the current state of the battle, reusing the given snapshot's memory when it is large enough.
+     * Must be called after start.
+     *
+     * @param reuse Earlier snapshot of this battle to overwrite, or null to allocate a new one.
+     * @return Snapshot that restore can roll this battle back to.
+     */
+    public BattleState snapshot(BattleState reuse) {
+        assert roster.size() < Integer.SIZE;
+        // Layout: turn, bitmask of alive enemies, player, every enemy in roster.
+        int size = 2 + player.stateSize();
+        for (Enemy enemy : roster) {
+            size += enemy.stateSize();
+        }
+        BattleState state = (reuse != null && reuse.battle == this) ? reuse : new BattleState(this, size);
+        if (state.data.length < size) {
+            state.data = new int[size];
+        }
+
+        int[] data = state.data;
+        int offset = 0;
+        data[offset++] = turn;
+        int alive = 0;
+        for (int i = 0; i < roster.size(); i++) {
+            if (enemies.contains(roster.get(i))) {
+                alive |= 1 << i;
+            }
+        }
+        data[offset++] = alive;
+        offset = player.writeState(data, offset);
+        for (Enemy enemy : roster) {
+            offset = enemy.writeState(data, offset);
+        }
+        assert offset == size;
+        state.size = size;
+        return state;
+    }
+
+    /**
+     * Rolls the battle back to the given snapshot. The battle's random stream is not rolled back.
+     *
+     * @param state Snapshot previously taken of this battle.
+     */
+    public void restore(BattleState state) {
+        if (state.battle != this) {
+            throw new IllegalArgumentException("state is a snapshot of a different battle");
+        }
+        int[] data = state.data;
+        int offset = 0;
+        turn = data[offset++];
+        int alive = data[offset++];
+        enemies.clear();
+        for (int i = 0; i < roster.size(); i++) {
+            if ((alive & (1 << i)) != 0) {
+                enemies.add(roster.get(i));
+            }
+        }
+        offset = player.readState(data, offset);
+        for (Enemy enemy : roster) {
+            offset = enemy.readState(data, offset);
+        }
+        assert offset == state.size;
+        version++;
     }
 
     /**
@@ -0,0 +1,103 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records a battle as it is played, into a BattleReplay: the seed and the starting player and enemies when
+ * recording starts, then each card the player plays with the index of its target, each end of turn, and the
+ * outcome. Create it with BattleManager.startRecording, which then reports to it.
+ * <p>
+ * Only battles played straight through can be replayed: branching a recorded battle with snapshot and restore
+ * would record the abandoned branches too. Searches branch on copies of the battle, which are not recorded.
+ */
+public final class BattleRecorder {
+    private final long seed;
+    private final int maxHealth;
+    private final int health;
+    private final int maxActionPoints;
+    private final int drawSize;
+    private final int[] deck;
+    private final int goldBefore; // the player's gold when recording started
+    private final List<String> enemies;
+    private int[] commandCards = new int[32];
+    private int[] commandTargets = new int[32];
+    private int commandCount;
+    private BattleReplay replay; // set by finish
+
+    /**
+     * Constructor. Must be called before the battle starts.
+     *
+     * @param seed   Seed of the battle.
+     * @param player The player, with the health and deck it starts the battle with.
+     * @param roster The enemies, in battlefield order.
+     */
+    BattleRecorder(long seed, Player player, List<Enemy> roster) {
+        this.seed = seed;
+        maxHealth = player.getMaxHealth();
+        health = player.getHealth();
+        maxActionPoints = player.getMaxActionPoints();
+        drawSize = player.getDrawSize();
+        deck = player.getDeckIds();
+        goldBefore = player.getGold();
+        List<String> names = new ArrayList<>(roster.size());
+        for (Enemy enemy : roster) {
+            names.add(enemy.getTypeName());
+        }
+        enemies = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Records that the player played a card.
+     *
+     * @param cardId      Id of the card played.
+     * @param targetIndex Index of the target among the alive enemies.
+     */
+    void playerAction(int cardId, int targetIndex) {
+        add(cardId, targetIndex);
+    }
+
+    /**
+     * Records the end of a turn.
+     */
+    void endTurn() {
+        add(BattleReplay.END_TURN, 0);
+    }
+
+    private void add(int card, int target) {
+        if (replay != null) {
+            throw new IllegalStateException("The battle is over");
+        }
+        if (commandCount == commandCards.length) {
+            commandCards = Arrays.copyOf(commandCards, commandCount * 2);
+            commandTargets = Arrays.copyOf(commandTargets, commandCount * 2);
+        }
+        commandCards[commandCount] = card;
+        commandTargets[commandCount] = target;
+        commandCount++;
+    }
+
+    /**
+     * Records the outcome of the battle.
+     *
+     * @param battle Battle after postGame.
+     * @param drops  What postGame returned.
+     */
+    void finish(BattleManager battle, Set<Card> drops) {
+        replay = new BattleReplay(seed, maxHealth, health, maxActionPoints, drawSize, deck, enemies,
+                Arrays.copyOf(commandCards, commandCount), Arrays.copyOf(commandTargets, commandCount),
+                BattleReplay.Outcome.of(battle, goldBefore, drops));
+    }
+
+    /**
+     * @return The recorded battle.
+     * @throws IllegalStateException if the battle's postGame has not been called yet.
+     */
+    public BattleReplay getReplay() {
+        if (replay == null) {
+            throw new IllegalStateException("The battle is not over");
+        }
+        return replay;
+    }
+}
@@ -0,0 +1,530 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A recorded battle: its seed, the player and enemies it started with, every command the player gave, and how it
+ * ended. A battle is fully determined by these, so replay plays it again through BattleManager, without any view
+ * or listener, and should reach the same outcome. Record battles with BattleManager.startRecording; check stored
+ * replays with ReplayVerifier.
+ * <p>
+ * Binary format, version 2:
+ * <pre>
+ *   int    magic ("KDRP"), big-endian
+ *   short  version, big-endian
+ *   long   seed
+ *   uint   number of distinct cards, then each card's name; cards below are numbered by their place in this table
+ *   uint   player maxHealth, health, maxActionPoints, drawSize
+ *   uint   number of cards in the player's deck, then each card's number
+ *   uint   number of enemies, then each enemy's type name
+ *   uint   number of commands, then each command: card number + 1 followed by the target's index among the alive
+ *          enemies, or 0 to end the turn
+ *   uint   result (0 lost, 1 won, 2 unfinished), turn, player health, gold gained
+ *   uint   number of cards dropped, then each card's number
+ * </pre>
+ * After the version, numbers are LEB128 varints (the long zigzag-encoded) and strings a varint byte length followed
+ * by UTF-8, so a typical battle takes under two hundred bytes. Cards are stored by name, through the table, and enemies
+ * by type name: card ids are only stable within a process, and a process that loads an edited cards.json hands them
+ * out anew. Decoding maps the names to the ids of the current catalog.
+ */
+public final class BattleReplay {
+    private static final int MAGIC = 0x4B445250; // "KDRP"
+    private static final short VERSION = 2;
+    public static final String FILE_EXTENSION = ".kdr"; // extension of replay files
+    static final int END_TURN = -1; // card id of the command that ends the turn
+
+    private final long seed;
+    private final int maxHealth;
+    private final int health;
+    private final int maxActionPoints;
+    private final int drawSize;
+    private final int[] deck; // ids of the cards in the player's deck, in this process
+    private final List<String> enemies; // type names of the enemies, in battlefield order
+    private final int[] commandCards; // card id of each command, END_TURN to end the turn
+    private final int[] commandTargets; // index among the alive enemies of the target of each command
+    private final Outcome outcome;
+
+    /**
+     * How a battle ended.
+     */
+    public enum Result {
+        LOST, WON, UNFINISHED
+    }
+
+    /**
+     * The outcome of a battle: its result and what the player was left with.
+     */
+    public static final class Outcome {
+        private final Result result;
+        private final int turn; // the battle's turn number at the end
+        private final int playerHealth;
+        private final int goldGained;
+        private final int[] drops; // ids of the cards dropped, in this process, in the order postGame returned them
+
+        /**
+         * Constructor.
+         */
+        public Outcome(Result result, int turn, int playerHealth, int goldGained, int[] drops) {
+            this.result = result;
+            this.turn = turn;
+            this.playerHealth = playerHealth;
+            this.goldGained = goldGained;
+            this.drops = drops;
+        }
+
+        /**
+         * @param battle     Battle after postGame.
+         * @param goldBefore The player's gold before the battle.
+         * @param drops      What postGame returned.
+         * @return The battle's outcome.
+         */
+        static Outcome of(BattleManager battle, int goldBefore, Set<Card> drops) {
+            Player player = battle.getPlayer();
+            Result result = player.isDead() ? Result.LOST : battle.isBattleOver() ? Result.WON : Result.UNFINISHED;
+            int[] dropIds = new int[drops.size()];
+            int i = 0;
+            for (Card card : drops) {
+                dropIds[i++] = card.getId();
+            }
+            return new Outcome(result, battle.getTurn(), player.getHealth(), player.getGold() - goldBefore, dropIds);
+        }
+
+        public Result getResult() {
+            return result;
+        }
+
+        public int getTurn() {
+            return turn;
+        }
+
+        public int getPlayerHealth() {
+            return playerHealth;
+        }
+
+        public int getGoldGained() {
+            return goldGained;
+        }
+
+        /**
+         * @return Copy of the ids of the cards dropped.
+         */
+        public int[] getDrops() {
+            return drops.clone();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Outcome)) {
+                return false;
+            }
+            Outcome that = (Outcome) other;
+            return result == that.result && turn == that.turn && playerHealth == that.playerHealth
+                    && goldGained == that.goldGained && Arrays.equals(drops, that.drops);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(result, turn, playerHealth, goldGained, Arrays.hashCode(drops));
+        }
+
+        @Override
+        public String toString() {
+            return result + " on turn " + turn + " with " + playerHealth + " health, " + goldGained + " gold gained, drops "
+                    + Arrays.toString(drops);
+        }
+    }
+
+    /**
+     * Constructor. The arrays are not copied; use BattleRecorder or decode.
+     */
+    BattleReplay(long seed, int maxHealth, int health, int maxActionPoints, int drawSize, int[] deck,
+                 List<String> enemies, int[] commandCards, int[] commandTargets, Outcome outcome) {
+        assert commandCards.length == commandTargets.length;
+        this.seed = seed;
+        this.maxHealth = maxHealth;
+        this.health = health;
+        this.maxActionPoints = maxActionPoints;
+        this.drawSize = drawSize;
+        this.deck = deck;
+        this.enemies = enemies;
+        this.commandCards = commandCards;
+        this.commandTargets = commandTargets;
+        this.outcome = outcome;
+    }
+
+    /**
+     * @return The seed of the battle.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The number of commands the player gave, counting the ends of turns.
+     */
+    public int getCommandCount() {
+        return commandCards.length;
+    }
+
+    /**
+     * @return How the recorded battle ended.
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Plays the battle again with the current catalog, following the recorded commands, in the order the views
+     * drive a battle. Stops when the battle is over or the commands run out.
+     *
+     * @return How the replayed battle ended.
+     * @throws IllegalStateException if an enemy type or a card of the player's deck is unknown, or a command
+     *                               cannot be played: its card is unknown, not in hand or too expensive, its
+     *                               target is not on the battlefield, or the battle ended before it.
+     */
+    public Outcome replay() {
+        Catalog catalog = Catalog.getCurrent();
+        for (int id : deck) {
+            Card card = catalog.getCard(id);
+            if (card == null || !card.isPlayerCard()) {
+                throw new IllegalStateException("The player's deck has card " + id + ", which is not a player card");
+            }
+        }
+        Player player = new Player("Replay", maxHealth, maxActionPoints, deck, drawSize);
+        player.setHealth(health);
+        List<Enemy> battlefield = new ArrayList<>(enemies.size());
+        for (String name : enemies) {
+            EnemyTemplate template = catalog.getEnemyTemplate(name);
+            if (template == null) {
+                throw new IllegalStateException("Unknown enemy " + name);
+            }
+            battlefield.add(template.create());
+        }
+
+        int goldBefore = player.getGold();
+        BattleManager battle = new BattleManager(player, battlefield, seed);
+        battle.start();
+        int next = 0;
+        while (next < commandCards.length && !battle.isBattleOver()) {
+            battle.calculateEnemyMoves();
+            battle.prePlayerTurn();
+            while (next < commandCards.length && commandCards[next] != END_TURN) {
+                if (battle.isBattleOver()) {
+                    throw new IllegalStateException("Battle ended before command " + next);
+                }
+                playCommand(battle, player, next++);
+            }
+            if (next < commandCards.length) {
+                next++; // END_TURN, which a client may or may not record after the battle is won
+                battle.preEnemyTurn();
+                BattleSimulator.playEnemyTurn(battle, player);
+                battle.postTurn();
+            }
+        }
+        if (next < commandCards.length) {
+            throw new IllegalStateException("Battle ended with " + (commandCards.length - next) + " commands left");
+        }
+        return Outcome.of(battle, goldBefore, battle.postGame());
+    }
+
+    private void playCommand(BattleManager battle, Player player, int command) {
+        Card card = battle.getCatalog().getCard(commandCards[command]);
+        if (card == null || !player.actionDeckContains(card) || card.getCost() > player.getActionPoints()) {
+            throw new IllegalStateException("Command " + command + " plays card " + commandCards[command]
+                    + " that is unknown, not in hand or too expensive");
+        }
+        List<Enemy> alive = battle.getEnemies();
+        if (commandTargets[command] >= alive.size()) {
+            throw new IllegalStateException("Command " + command + " targets enemy " + commandTargets[command]
+                    + " of " + alive.size());
+        }
+        battle.playerAction(card, alive.get(commandTargets[command]));
+    }
+
+    /**
+     * Replays the battle and compares the outcome with the recorded one.
+     *
+     * @return null if the replay reaches the recorded outcome, otherwise a description of the divergence.
+     */
+    public String verify() {
+        Outcome replayed;
+        try {
+            replayed = replay();
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        }
+        if (!replayed.equals(outcome)) {
+            return "Recorded " + outcome + ", replayed " + replayed;
+        }
+        return null;
+    }
+
+    /**
+     * Encodes the replay in the current binary format.
+     *
+     * @return Buffer holding the encoding, positioned at 0.
+     */
+    public ByteBuffer encode() {
+        // Number the cards in the order they first appear.
+        Map<Integer, Integer> numbers = new LinkedHashMap<>();
+        for (int id : deck) {
+            numbers.putIfAbsent(id, numbers.size());
+        }
+        for (int id : commandCards) {
+            if (id != END_TURN) {
+                numbers.putIfAbsent(id, numbers.size());
+            }
+        }
+        for (int id : outcome.drops) {
+            numbers.putIfAbsent(id, numbers.size());
+        }
+        Catalog catalog = Catalog.getCurrent();
+        List<byte[]> cardNames = new ArrayList<>(numbers.size());
+        List<byte[]> enemyNames = new ArrayList<>(enemies.size());
+        int size = 4 + 2 + 10 + 5 + 4 * 5 + 5 * (1 + deck.length) + 5 + 5 * (1 + commandCards.length * 2) + 4 * 5
+                + 5 * (1 + outcome.drops.length);
+        for (int id : numbers.keySet()) {
+            Card card = catalog.getCard(id);
+            if (card == null) {
+                throw new IllegalStateException("No card has id " + id);
+            }
+            byte[] bytes = card.getName().getBytes(StandardCharsets.UTF_8);
+            cardNames.add(bytes);
+            size += 5 + bytes.length;
+        }
+        for (String name : enemies) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            enemyNames.add(bytes);
+            size += 5 + bytes.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        putVarlong(buffer, (seed << 1) ^ (seed >> 63));
+        putStrings(buffer, cardNames);
+        putVarint(buffer, maxHealth);
+        putVarint(buffer, health);
+        putVarint(buffer, maxActionPoints);
+        putVarint(buffer, drawSize);
+        putVarint(buffer, deck.length);
+        for (int id : deck) {
+            putVarint(buffer, numbers.get(id));
+        }
+        putStrings(buffer, enemyNames);
+        putVarint(buffer, commandCards.length);
+        for (int i = 0; i < commandCards.length; i++) {
+            if (commandCards[i] != END_TURN) {
+                putVarint(buffer, numbers.get(commandCards[i]) + 1);
+                putVarint(buffer, commandTargets[i]);
+            } else {
+                putVarint(buffer, 0);
+            }
+        }
+        putVarint(buffer, outcome.result.ordinal());
+        putVarint(buffer, outcome.turn);
+        putVarint(buffer, outcome.playerHealth);
+        putVarint(buffer, outcome.goldGained);
+        putVarint(buffer, outcome.drops.length);
+        for (int id : outcome.drops) {
+            putVarint(buffer, numbers.get(id));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes a replay from its binary format.
+     *
+     * @param buffer Buffer positioned at the start of the encoding.
+     * @return The replay, with its cards mapped to the ids of the current catalog.
+     * @throws IOException if the buffer is not a replay, is a replay from another version of the game, or names a
+     *                     card the current catalog does not have.
+     */
+    public static BattleReplay decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a replay file");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported replay version " + version);
+            }
+            long zigzag = getVarlong(buffer);
+            long seed = (zigzag >>> 1) ^ -(zigzag & 1);
+            Catalog catalog = Catalog.getCurrent();
+            List<String> cardNames = getStrings(buffer);
+            int[] ids = new int[cardNames.size()]; // id in the current catalog of each card number
+            for (int i = 0; i < ids.length; i++) {
+                Card card = catalog.getCard(cardNames.get(i));
+                if (card == null) {
+                    throw new IOException("Unknown card " + cardNames.get(i));
+                }
+                ids[i] = card.getId();
+            }
+            int maxHealth = getVarint(buffer);
+            int health = getVarint(buffer);
+            int maxActionPoints = getVarint(buffer);
+            int drawSize = getVarint(buffer);
+            int[] deck = getCards(buffer, ids);
+            List<String> enemies = getStrings(buffer);
+            int commandCount = getLength(buffer);
+            int[] commandCards = new int[commandCount];
+            int[] commandTargets = new int[commandCount];
+            for (int i = 0; i < commandCount; i++) {
+                int number = getVarint(buffer);
+                if (number == 0) {
+                    commandCards[i] = END_TURN;
+                } else {
+                    commandCards[i] = getCard(number - 1, ids);
+                    commandTargets[i] = getVarint(buffer);
+                }
+            }
+            int result = getVarint(buffer);
+            if (result >= Result.values().length) {
+                throw new IOException("Unknown battle result " + result);
+            }
+            int turn = getVarint(buffer);
+            int playerHealth = getVarint(buffer);
+            int goldGained = getVarint(buffer);
+            int[] drops = getCards(buffer, ids);
+            Outcome outcome = new Outcome(Result.values()[result], turn, playerHealth, goldGained, drops);
+            return new BattleReplay(seed, maxHealth, health, maxActionPoints, drawSize, deck, enemies, commandCards,
+                    commandTargets, outcome);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated replay file", e);
+        }
+    }
+
+    /**
+     * Writes the replay to the given file, replacing it atomically, so a verifier reading the directory never sees
+     * half a replay.
+     *
+     * @param path File to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer buffer = encode();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a replay from the given file.
+     *
+     * @param path File to read.
+     * @return The replay.
+     * @throws IOException if the file cannot be read or is not a valid replay.
+     */
+    public static BattleReplay read(Path path) throws IOException {
+        return decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        putVarlong(buffer, value & 0xFFFFFFFFL);
+    }
+
+    private static void putVarlong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) throws IOException {
+        long value = getVarlong(buffer);
+        if (value > 0xFFFFFFFFL) {
+            throw new IOException("Varint out of range");
+        }
+        return (int) value;
+    }
+
+    private static long getVarlong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Reads a count, checking that it cannot be more than the bytes left, so a corrupt file cannot make us allocate a
+     * huge array.
+     */
+    private static int getLength(ByteBuffer buffer) throws IOException {
+        int length = getVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    private static void putStrings(ByteBuffer buffer, List<byte[]> strings) {
+        putVarint(buffer, strings.size());
+        for (byte[] string : strings) {
+            putVarint(buffer, string.length);
+            buffer.put(string);
+        }
+    }
+
+    private static List<String> getStrings(ByteBuffer buffer) throws IOException {
+        int count = getLength(buffer);
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] string = new byte[getLength(buffer)];
+            buffer.get(string);
+            strings.add(new String(string, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    /**
+     * Reads a card number and maps it to the card's id.
+     */
+    private static int getCard(int number, int[] ids) throws IOException {
+        if (number < 0 || number >= ids.length) {
+            throw new IOException("Invalid card number " + number);
+        }
+        return ids[number];
+    }
+
+    /**
+     * Reads a count followed by that many card numbers, and maps them to the cards' ids.
+     */
+    private static int[] getCards(ByteBuffer buffer, int[] ids) throws IOException {
+        int[] cards = new int[getLength(buffer)];
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = getCard(getVarint(buffer), ids);
+        }
+        return cards;
+    }
+}
@@ -35,13 +35,17 @@ public class BattleScreenController extends ApplicationController implements Ini
     @FXML private Text APDisplay;
     @FXML private Text ActionSummary;
     @FXML private Button EndTurnButton;
+    @FXML private Button HintButton;
     private Region LSpacer, RSpacer;
     private GameModel model;
     BattleManager battleManager;
     private SimpleStringProperty actionPointsDisplay; // the text to be displayed in the ActionPoints display.
+    private final StringBuilder battleLog = new StringBuilder(); // what happened since the last action summary.
+    private final TurnSolver hintSolver = new TurnSolver(); // finds the best plan for the turn when asked for a hint.
+    private final List<Text> damagePreviews = new ArrayList<>(); // forecasts shown while a card is dragged over an enemy.
 
     /**
-     * TODO: Auto end turn, handle player death, handle loot drops, add enemy turn display, add health display,
+     * TODO: Auto end turn, handle loot drops, add enemy turn display, add health display,
      * add animdations for cards coming in, and work on graphics.
      */
 
@@ -66,6 +70,12 @@ public class BattleScreenController extends ApplicationController implements Ini
     public void setModel(GameModel model) {
         this.model = model;
         battleManager = model.startBattle(model.getDifficulty());
+        battleManager.setEventListener(new ConsoleBattleEventListener(false) {
+            @Override
+            protected void println(String line) {
+                battleLog.append(line.trim()).append('\n');
+            }
+        });
         battleManager.start();
         System.out.println(battleManager.getEnemies().toString());
         startPlayerTurn();
@@ -73,14 +83,17 @@ public class BattleScreenController extends ApplicationController implements Ini
 
     /**
      * Does the pre-player turn agenda. Updates all of the holders to display the enemies, the player, and the cards.
+     * Goes through the battle in the same order as BattleReplay.replay, so that a recorded battle replays the same.
      */
     private void startPlayerTurn() {
+        battleManager.calculateEnemyMoves();
         battleManager.prePlayerTurn();
         assert model.getPlayer().getActionDeck() != null;
         initMobDisplay(battleManager.getEnemies());
         updateDisplays();
         CardHolder.setVisible(true);
         EndTurnButton.setDisable(false);
+        HintButton.setDisable(false);
     }
 
     /**
@@ -90,41 +103,49 @@ public class BattleScreenController extends ApplicationController implements Ini
      * @param enemy the enemy to be targeted.
      */
     private void attack(Card card, Enemy enemy) {
-        BattleManager.ActionSummary as = battleManager.playerAction(card, enemy);
-        for (Being target : as.getOpponents()) {
-            for (Node node : EnemyHolder.getChildren()) {
-                if (node instanceof StackPane) {
-                    String enemyName = ((Text) ((StackPane) node).getChildren().get(1)).getText();
-                    if (enemyName.equals(target.getName())) {
-                        Text damageDealt = new Text("-" + as.getCardPlayed().getDamage());
-                        damageDealt.setFont(new Font(20));
-                        ((StackPane) node).getChildren().add(damageDealt);
-                        floatingText(damageDealt);
-                    }
-                }
+        battleLog.setLength(0);
+        clearDamagePreviews();
+        List<DamageForecast> forecasts = battleManager.forecast(card, enemy);
+        battleManager.playerAction(card, enemy);
+        for (DamageForecast forecast : forecasts) {
+            StackPane holder = getHolder(forecast.getTarget());
+            if (holder != null) {
+                Text damageDealt = new Text("-" + forecast.getDamage());
+                damageDealt.setFont(new Font(20));
+                holder.getChildren().add(damageDealt);
+                floatingText(damageDealt);
             }
         }
         updateDisplays();
-        animateText(ActionSummary, EndTurnButton, as.toString());
+        animateText(ActionSummary, EndTurnButton, battleLog.toString().trim());
         if (battleManager.isBattleOver()) {
-            Set<Card> choose = battleManager.postGame();
-            BattleScreen.getChildren().clear();
-            Text endingDialogue = new Text();
-            endingDialogue.setFont(new Font(20));
-            BattleScreen.getChildren().add(endingDialogue);
-            if (true) { // choose.isEmpty()
-                animateText(endingDialogue, "The enemies didn't drop any cards....", new EventHandler<ActionEvent>() {
-                    @Override
-                    public void handle(ActionEvent actionEvent) {
-                        try {
-                            goToWhatToDoScreen();
-                        } catch (IOException e) {
-                            System.out.println("HUGE ERROR!");
-                            e.printStackTrace();
-                        }
+            endBattle();
+        }
+    }
+
+    /**
+     * Does the post-game agenda, saves the replay if the battle was recorded, and shows the ending dialogue.
+     */
+    private void endBattle() {
+        Set<Card> choose = battleManager.postGame();
+        GameModel.saveReplay(battleManager);
+        BattleScreen.getChildren().clear();
+        Text endingDialogue = new Text();
+        endingDialogue.setFont(new Font(20));
+        BattleScreen.getChildren().add(endingDialogue);
+        String ending = model.getPlayer().isDead() ? "You have been defeated...." : "The enemies didn't drop any cards....";
+        if (true) { // choose.isEmpty()
+            animateText(endingDialogue, ending, new EventHandler<ActionEvent>() {
+                @Override
+                public void handle(ActionEvent actionEvent) {
+                    try {
+                        goToWhatToDoScreen();
+                    } catch (IOException e) {
+                        System.out.println("HUGE ERROR!");
+                        e.printStackTrace();
                     }
-                }, 2);
-            }
+                }
+            }, 2);
         }
     }
 
@@ -157,13 +178,26 @@ public class BattleScreenController extends ApplicationController implements Ini
     @FXML
     private void onEndTurnClicked(ActionEvent Event) {
         EndTurnButton.setDisable(true);
+        HintButton.setDisable(true);
         battleManager.preEnemyTurn();
-        List<BattleManager.ActionSummary> moves = battleManager.enemiesTurn();
-        for (BattleManager.ActionSummary move : moves) {
-            System.out.println(move); // TODO: Parse this to make it readable!
-        }
+        BattleSimulator.playEnemyTurn(battleManager, model.getPlayer());
         battleManager.postTurn();
-        startPlayerTurn();
+        if (battleManager.isBattleOver()) {
+            endBattle();
+        } else {
+            startPlayerTurn();
+        }
+    }
+
+    /**
+     * Called when the Hint button is clicked. Shows the best plan for the rest of the turn in the action summary.
+     * @param Event
+     */
+    @FXML
+    private void onHintClicked(ActionEvent Event) {
+        if (!battleManager.isBattleOver()) {
+            animateText(ActionSummary, EndTurnButton, "Hint: " + hintSolver.solve(battleManager, model.getPlayer()));
+        }
     }
 
     /**
@@ -195,6 +229,25 @@ public class BattleScreenController extends ApplicationController implements Ini
                     dragEvent.consume();
                 }
             });
+            enemyHolder.setOnDragEntered(new EventHandler<DragEvent>() {
+                @Override
+                public void handle(DragEvent dragEvent) {
+                    if (dragEvent.getDragboard().hasString()) {
+                        Card card = CardFactory.getCard(dragEvent.getDragboard().getString());
+                        if (card != null && card.getDamage() > 0 && battleManager.getEnemies().contains(enemy)) {
+                            showDamagePreviews(card, enemy);
+                        }
+                    }
+                    dragEvent.consume();
+                }
+            });
+            enemyHolder.setOnDragExited(new EventHandler<DragEvent>() {
+                @Override
+                public void handle(DragEvent dragEvent) {
+                    clearDamagePreviews();
+                    dragEvent.consume();
+                }
+            });
             enemyHolder.setOnDragDropped(new EventHandler<DragEvent>() {
                 @Override
                 public void handle(DragEvent dragEvent) {
@@ -218,6 +271,53 @@ public class BattleScreenController extends ApplicationController implements Ini
         }
     }
 
+    /**
+     * Shows, over every enemy the card would hit, how much damage it would deal.
+     *
+     * @param card   the card being dragged.
+     * @param target the enemy it is dragged over.
+     */
+    private void showDamagePreviews(Card card, Enemy target) {
+        clearDamagePreviews();
+        for (DamageForecast forecast : battleManager.forecast(card, target)) {
+            StackPane holder = getHolder(forecast.getTarget());
+            if (holder != null) {
+                Text preview = new Text("-" + forecast.getDamage() + (forecast.isLethal() ? " (lethal)" : ""));
+                preview.setFont(new Font(16));
+                preview.setFill(Color.DARKRED);
+                StackPane.setAlignment(preview, Pos.TOP_CENTER);
+                holder.getChildren().add(preview);
+                damagePreviews.add(preview);
+            }
+        }
+    }
+
+    /**
+     * Removes the damage previews shown by showDamagePreviews.
+     */
+    private void clearDamagePreviews() {
+        for (Text preview : damagePreviews) {
+            ((StackPane) preview.getParent()).getChildren().remove(preview);
+        }
+        damagePreviews.clear();
+    }
+
+    /**
+     * @param being a being on the battlefield.
+     * @return the view of the being in the enemy holder, or null if it is not shown.
+     */
+    private StackPane getHolder(Being being) {
+        for (Node node : EnemyHolder.getChildren()) {
+            if (node instanceof StackPane) {
+                String name = ((Text) ((StackPane) node).getChildren().get(1)).getText();
+                if (name.equals(being.getName())) {
+                    return (StackPane) node;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Updates the views (player and all enemies) in the enemy holder by removing all dead beings on the battlefield.
      * Dead beings are faded out.
@@ -0,0 +1,468 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many battles without any UI, in parallel, to measure the balance of the cards and enemies.
+ * <p>
+ * Each battle gets a fresh Player built from the configured deck and stats, and fresh enemies from the configured
+ * encounter. The player's side is played by a PlayerPolicy, and every battle is driven through BattleManager in the
+ * same order the views use.
+ * <p>
+ * Battle i of a run always gets the i-th seed of the run's seed, so a run is reproducible regardless of how many
+ * threads play it.
+ * <p>
+ * Each thread keeps an EnemyPool, so the enemies of a finished battle are reused by the thread's next battle.
+ * <p>
+ * With --record, every battle is also recorded into a directory, for ReplayVerifier to check that it replays the same.
+ */
+public class BattleSimulator {
+    public static final int MAX_TURNS = 200; // battles still running after this many turns count as losses.
+    private static final int BATTLES_PER_TASK = 64; // battles played sequentially by a single fork-join task.
+    private static final ThreadLocal<EnemyPool> ENEMY_POOLS = ThreadLocal.withInitial(EnemyPool::new);
+
+    private final List<Card> deck; // the deck every simulated player starts with
+    private final int maxHealth;
+    private final int maxActionPoints;
+    private final int drawSize;
+    private final Encounter encounter; // creates the enemies for each battle; must be thread-safe
+    private final PlayerPolicy policy; // plays the player's side; must be thread-safe
+    private Path replayDirectory; // the directory every battle is recorded into, null to not record
+
+    /**
+     * Constructor.
+     *
+     * @param deck            The deck each simulated player starts with.
+     * @param maxHealth       The maximum health of each simulated player.
+     * @param maxActionPoints The maximum action points of each simulated player.
+     * @param drawSize        The number of cards each simulated player draws per turn.
+     * @param encounter       Creates a new list of enemies for each battle. Called from many threads at once.
+     * @param policy          Plays the player's side. Called from many threads at once.
+     */
+    public BattleSimulator(List<Card> deck, int maxHealth, int maxActionPoints, int drawSize,
+                           Encounter encounter, PlayerPolicy policy) {
+        assert !deck.isEmpty();
+        this.deck = new ArrayList<>(deck);
+        this.maxHealth = maxHealth;
+        this.maxActionPoints = maxActionPoints;
+        this.drawSize = drawSize;
+        this.encounter = encounter;
+        this.policy = policy;
+    }
+
+    /**
+     * Records every battle played from now on into the given directory. See GameModel.saveReplay.
+     *
+     * @param directory Directory to write the replays into, null to stop recording.
+     */
+    public void setReplayDirectory(Path directory) {
+        replayDirectory = directory;
+    }
+
+    /**
+     * Plays the given number of battles on the common fork-join pool.
+     *
+     * @param battles Number of battles to play, must be positive.
+     * @param seed    Seed the whole run is derived from.
+     * @return Report summarizing all the battles.
+     */
+    public Report simulate(int battles, long seed) {
+        return simulate(battles, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Plays the given number of battles on the given pool.
+     *
+     * @param battles Number of battles to play, must be positive.
+     * @param seed    Seed the whole run is derived from.
+     * @param pool    Pool to run the battles on.
+     * @return Report summarizing all the battles.
+     */
+    public Report simulate(int battles, long seed, ForkJoinPool pool) {
+        assert battles > 0;
+        // Handing out the battle seeds up front makes each battle's seed depend only on its index.
+        long[] seeds = new long[battles];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < battles; i++) {
+            seeds[i] = random.nextLong();
+        }
+        return pool.invoke(new SimulationTask(this, seeds, 0, battles));
+    }
+
+    /**
+     * Plays a single battle with a fresh player and fresh enemies.
+     *
+     * @param seed Seed of the battle. The same seed always plays out the same battle, with new or reused enemies.
+     * @return Report containing just this battle.
+     */
+    public Report simulateOne(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Player player = new Player("Simulated Player", maxHealth, maxActionPoints, deck, drawSize);
+        EnemyPool pool = ENEMY_POOLS.get();
+        BattleManager battle = new BattleManager(player, encounter.create(random, pool), random.nextLong());
+        if (replayDirectory != null) {
+            battle.startRecording();
+        }
+        Report report = playBattle(battle, player, policy);
+        if (replayDirectory != null) {
+            GameModel.saveReplay(battle, replayDirectory);
+        }
+        pool.releaseAll(battle.getRoster());
+        return report;
+    }
+
+    /**
+     * Plays the given battle to completion, letting the policy play the player's side.
+     *
+     * @param battle Battle that has just been constructed.
+     * @param player The player in the battle.
+     * @param policy Policy choosing the player's moves.
+     * @return Report containing just this battle.
+     */
+    public static Report playBattle(BattleManager battle, Player player, PlayerPolicy policy) {
+        int startingHealth = player.getHealth();
+        int turns = 0;
+
+        battle.start();
+        while (!battle.isBattleOver() && turns < MAX_TURNS) {
+            battle.calculateEnemyMoves();
+            battle.prePlayerTurn();
+            playPlayerTurn(battle, player, policy);
+            battle.preEnemyTurn();
+            playEnemyTurn(battle, player);
+            battle.postTurn();
+            turns++;
+        }
+        battle.postGame();
+
+        Report report = new Report();
+        report.battles = 1;
+        if (!player.isDead() && battle.isBattleOver()) {
+            report.wins = 1;
+            report.totalTurnsToWin = turns;
+        } else if (!player.isDead()) {
+            report.unfinished = 1;
+        }
+        report.totalHealthLost = startingHealth - player.getHealth();
+        return report;
+    }
+
+    /**
+     * Lets the policy play cards until it ends the turn, the player cannot play anything else, or the battle ends.
+     *
+     * @param battle Battle in which prePlayerTurn has just been called.
+     * @param player The player in the battle.
+     * @param policy Policy choosing the player's moves.
+     * @throws IllegalStateException if the policy picks a card that is not in hand or cannot be afforded.
+     */
+    public static void playPlayerTurn(BattleManager battle, Player player, PlayerPolicy policy) {
+        while (player.getActionPoints() > 0 && !player.isActionDeckEmpty() && !battle.isBattleOver()) {
+            PlayerPolicy.Move move = policy.chooseMove(battle, player);
+            if (move == null) {
+                return;
+            }
+            Card card = move.getCard();
+            if (!player.actionDeckContains(card) || card.getCost() > player.getActionPoints()) {
+                throw new IllegalStateException("Policy chose an unplayable card: " + card);
+            }
+            battle.playerAction(card, move.getTarget());
+        }
+    }
+
+    /**
+     * Plays every enemy's intended cards against the player, stopping early if the player dies.
+     *
+     * @param battle Battle in which preEnemyTurn has just been called.
+     * @param player The player in the battle.
+     */
+    public static void playEnemyTurn(BattleManager battle, Player player) {
+        for (BattleManager.ActionSummary action : battle.enemiesTurn()) {
+            if (player.isDead()) {
+                return;
+            }
+            action.getCardUser().playCard(action.getCardPlayed(), player);
+        }
+    }
+
+    /**
+     * Creates the enemies for a simulated battle.
+     */
+    public interface Encounter {
+        /**
+         * @param random Random stream of the battle being set up. All random choices must come from it.
+         * @param pool   Pool of the calling thread, to take fully-healed enemies from instead of creating them.
+         * @return New list of enemies to fight.
+         */
+        List<Enemy> create(SplittableRandom random, EnemyPool pool);
+    }
+
+    /**
+     * Splits a range of battles in half until it is small enough to play sequentially.
+     */
+    private static final class SimulationTask extends RecursiveTask<Report> {
+        private static final long serialVersionUID = 1L;
+
+        private final BattleSimulator simulator; // plays the battles
+        private final long[] seeds;
+        private final int from;
+        private final int to;
+
+        SimulationTask(BattleSimulator simulator, long[] seeds, int from, int to) {
+            this.simulator = simulator;
+            this.seeds = seeds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Report compute() {
+            if (to - from <= BATTLES_PER_TASK) {
+                Report report = new Report();
+                for (int i = from; i < to; i++) {
+                    report.add(simulator.simulateOne(seeds[i]));
+                }
+                return report;
+            }
+            int mid = (from + to) >>> 1;
+            SimulationTask left = new SimulationTask(simulator, seeds, from, mid);
+            left.fork();
+            Report report = new SimulationTask(simulator, seeds, mid, to).compute();
+            report.add(left.join());
+            return report;
+        }
+    }
+
+    /**
+     * Aggregated results of one or more simulated battles.
+     */
+    public static class Report {
+        private long battles; // battles played
+        private long wins; // battles where every enemy died
+        private long unfinished; // battles stopped at MAX_TURNS with the player still alive
+        private long totalTurnsToWin; // sum of the turns taken by every won battle
+        private long totalHealthLost; // sum of the health the player lost in every battle
+
+        /**
+         * Adds the results of the other report into this one.
+         *
+         * @param other Report to add.
+         */
+        public void add(Report other) {
+            battles += other.battles;
+            wins += other.wins;
+            unfinished += other.unfinished;
+            totalTurnsToWin += other.totalTurnsToWin;
+            totalHealthLost += other.totalHealthLost;
+        }
+
+        public long getBattles() {
+            return battles;
+        }
+
+        public long getWins() {
+            return wins;
+        }
+
+        public long getUnfinished() {
+            return unfinished;
+        }
+
+        /**
+         * @return Fraction of battles won, between 0 and 1.
+         */
+        public double getWinRate() {
+            return (battles == 0) ? 0 : (double) wins / battles;
+        }
+
+        /**
+         * @return Average number of turns taken by the won battles, or 0 if none were won.
+         */
+        public double getAverageTurnsToWin() {
+            return (wins == 0) ? 0 : (double) totalTurnsToWin / wins;
+        }
+
+        /**
+         * @return Average health lost per battle.
+         */
+        public double getAverageHealthLost() {
+            return (battles == 0) ? 0 : (double) totalHealthLost / battles;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d battles: %.2f%% won, %.2f turns to win, %.2f HP lost, %d unfinished",
+                    battles, getWinRate() * 100, getAverageTurnsToWin(), getAverageHealthLost(), unfinished);
+        }
+    }
+
+    /**
+     * Prints what a kill of each of the given enemy types drops, computed exactly from the loot tables.
+     *
+     * @param names Names of the enemy types, or just "all".
+     */
+    private static void printLootRates(List<String> names) {
+        Catalog catalog = Catalog.getCurrent();
+        List<EnemyTemplate> templates = new ArrayList<>();
+        if (names.size() == 1 && names.get(0).equalsIgnoreCase("all")) {
+            templates.addAll(catalog.getAllEnemies());
+        } else {
+            for (String name : names) {
+                EnemyTemplate template = catalog.getEnemyTemplate(name);
+                if (template == null) {
+                    throw new IllegalArgumentException("Unknown enemy " + name);
+                }
+                templates.add(template);
+            }
+        }
+        for (EnemyTemplate template : templates) {
+            System.out.println(template.name + ": " + template.getLootTable().describe(catalog));
+        }
+    }
+
+    /**
+     * Runs a balance sweep from the command line.
+     * <p>
+     * Options (all optional):
+     * --battles N, --seed N, --stamina X (random encounters of this battle cost), --enemies "Beast,Knight" (fixed
+     * encounter), --deck "Stab,Stab,Smash" (defaults to the starting deck), --policy greedy|random|solver|mcts, --health N,
+     * --ap N, --draw N, --iterations N (search iterations per card played by mcts), --loot "Beast,Knight" or all (print
+     * the exact drop rates of the enemies' loot tables instead of playing battles).
+     */
+    public static void main(String[] args) {
+        int battles = 10_000;
+        long seed = new SplittableRandom().nextLong();
+        double stamina = 3;
+        List<String> enemyNames = null;
+        List<String> cardNames = null;
+        String policyName = "greedy";
+        int health = 50;
+        int actionPoints = 3;
+        int drawSize = 4;
+        int iterations = 200;
+        List<String> lootNames = null;
+        String recordDirectory = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--battles":
+                    battles = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--stamina":
+                    stamina = Double.parseDouble(value);
+                    break;
+                case "--enemies":
+                    enemyNames = Arrays.asList(value.split("\\s*,\\s*"));
+                    break;
+                case "--deck":
+                    cardNames = Arrays.asList(value.split("\\s*,\\s*"));
+                    break;
+                case "--policy":
+                    policyName = value;
+                    break;
+                case "--health":
+                    health = Integer.parseInt(value);
+                    break;
+                case "--ap":
+                    actionPoints = Integer.parseInt(value);
+                    break;
+                case "--draw":
+                    drawSize = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                case "--loot":
+                    lootNames = Arrays.asList(value.split("\\s*,\\s*"));
+                    break;
+                case "--record":
+                    recordDirectory = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        int maxEnemies = (enemyNames != null) ? enemyNames.size() : GameModel.BATTLEFIELD_SIZE;
+        if (policyName.equalsIgnoreCase("solver") && maxEnemies > TurnSolver.MAX_ENEMIES) {
+            throw new IllegalArgumentException("The solver policy handles at most " + TurnSolver.MAX_ENEMIES
+                    + " enemies, not " + maxEnemies);
+        }
+
+        new GameModel(); // loads the cards and enemies
+
+        if (lootNames != null) {
+            printLootRates(lootNames);
+            return;
+        }
+
+        List<Card> deck = GameModel.getInitialDeck();
+        if (cardNames != null) {
+            deck = new ArrayList<>();
+            for (String cardName : cardNames) {
+                Card card = CardFactory.getCard(cardName);
+                if (card == null) {
+                    throw new IllegalArgumentException("Unknown card " + cardName);
+                }
+                deck.add(card);
+            }
+        }
+
+        Encounter encounter;
+        if (enemyNames != null) {
+            final List<String> names = enemyNames;
+            for (String enemyName : names) {
+                if (EnemyFactory.getEnemy(enemyName) == null) {
+                    throw new IllegalArgumentException("Unknown enemy " + enemyName);
+                }
+            }
+            encounter = (random, pool) -> {
+                Catalog catalog = Catalog.getCurrent();
+                List<Enemy> enemies = new ArrayList<>();
+                for (String enemyName : names) {
+                    enemies.add(pool.acquire(catalog.getEnemyTemplate(enemyName)));
+                }
+                return enemies;
+            };
+        } else {
+            final double battleFieldStamina = stamina;
+            encounter = (random, pool) -> GameModel.generateEnemies(battleFieldStamina, random, pool);
+        }
+
+        PlayerPolicy policy;
+        if (policyName.equalsIgnoreCase("greedy")) {
+            policy = new GreedyPolicy();
+        } else if (policyName.equalsIgnoreCase("random")) {
+            policy = new RandomPolicy();
+        } else if (policyName.equalsIgnoreCase("solver")) {
+            policy = new SolverPolicy();
+        } else if (policyName.equalsIgnoreCase("mcts")) {
+            // The battles already run in parallel, so each search uses a single thread.
+            policy = new MonteCarloTreeSearch(1, 0, iterations);
+        } else {
+            throw new IllegalArgumentException("Unknown policy " + policyName);
+        }
+
+        BattleSimulator simulator = new BattleSimulator(deck, health, actionPoints, drawSize, encounter, policy);
+        if (recordDirectory != null) {
+            simulator.setReplayDirectory(Paths.get(recordDirectory));
+        }
+
+        long start = System.nanoTime();
+        Report report = simulator.simulate(battles, seed);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("Seed " + seed + ": " + report);
+        System.out.printf("%.1f ms (%.0f battles/s)%n", elapsed / 1e6, battles / (elapsed / 1e9));
+        if (policy instanceof MonteCarloTreeSearch) {
+            System.out.println(((MonteCarloTreeSearch) policy).getStats());
+        }
+    }
+}
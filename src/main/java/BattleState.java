@@ -0,0 +1,27 @@
+/**
+ * Snapshot of everything in a BattleManager that can change during a battle: the turn, which enemies are alive, and
+ * for the player and every enemy their stats (health, action points, defense, shield, strength, draw size), the
+ * order and boundaries of their piles, and the player's gold and each enemy's planned move. Card drops are not part
+ * of it: they are rolled from the enemies' loot tables in postGame.
+ * <p>
+ * The whole snapshot is one flat int array, a few hundred bytes for a typical battle, so search-based players can
+ * branch a battle cheaply. Create one with BattleManager.snapshot and roll back with BattleManager.restore.
+ * The battle's random stream is not part of the snapshot: a restored battle keeps drawing fresh numbers.
+ */
+public final class BattleState {
+    final BattleManager battle; // the battle this is a snapshot of; it can only be restored into that battle
+    int[] data; // flat encoding of the battle, see BattleManager.snapshot
+    int size; // the number of ints of data in use
+
+    BattleState(BattleManager battle, int capacity) {
+        this.battle = battle;
+        this.data = new int[capacity];
+    }
+
+    /**
+     * @return The number of bytes of battle state this snapshot holds.
+     */
+    public int getSizeInBytes() {
+        return size * Integer.BYTES;
+    }
+}
@@ -1,7 +1,9 @@
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.SplittableRandom;
 
 /**
  * This contains the elements of a basic Being.
@@ -13,15 +15,40 @@ public abstract class Being {
     protected int actionPoints;
     protected int maxActionPoints;
     protected int defense;
-    protected List<Card> deck;
+    protected int[] deck; // the ids of the cards in the being's deck. Only the first deckSize are in use.
+    protected int deckSize; // the number of cards in the being's deck.
     protected int shield;
     protected int strength;
 
     private static final int DEFAULT_DRAW_SIZE = 3;
     protected int drawSize; // the number of cards the being starts off their turn with in the actionDeck.
-    protected List<Card> actionDeck; // the cards in the being's hand.
-    protected List<Card> drawPile; // the cards the being is yet to draw.
-    protected List<Card> discardPile; // the cards the being has already seen.
+
+    // The draw pile, action deck (hand) and discard pile live in one permutation of the slots of battleDeck:
+    //   order = [ exhausted | discard pile | action deck | draw pile ]
+    //           0           discardStart   handStart     drawStart    battleDeckSize
+    // Drawing, discarding and exhausting a card only move a boundary or swap two slots.
+    private Card[] battleDeck = new Card[0]; // the deck as it was when the battle started, indexed by slot.
+    private int[] order = new int[0]; // permutation of the slots of battleDeck, split into the piles above.
+    private int battleDeckSize; // the number of slots in use.
+    private int discardStart; // start of the discard pile. Single use cards that were played sit before it.
+    private int handStart; // start of the action deck (the cards in the being's hand).
+    private int drawStart; // start of the draw pile (the cards the being is yet to draw).
+    private int[] actionDeckCounts = new int[0]; // the number of copies of each card id in the action deck.
+    private Catalog catalog; // the catalog the being's current battle started with, null before its first battle.
+    protected SplittableRandom random; // the source of all of this being's randomness.
+    protected BattleEventListener listener = BattleEventListener.NONE; // told about everything this being does.
+
+    private List<Card> actionDeckView; // read-only view of the action deck, made on first use
+    private List<Card> deckView; // read-only view of the deck, made on first use
+
+    // healthStatus of the last call, and the stats it was built from, so unchanged stats reuse the string.
+    private String status;
+    private String statusName;
+    private int statusHealth;
+    private int statusMaxHealth;
+    private int statusDefense;
+    private int statusShield;
+    private int statusStrength;
 
     /**
      * Constructor. Also sets action points and health to their respective maximum values.
@@ -32,21 +59,104 @@ public abstract class Being {
      * @param deck            the deck that the being has
      */
     public Being(String name, int maxHealth, int maxActionPoints, List<Card> deck) {
+        this(name, maxHealth, maxActionPoints, CardFactory.toIds(deck));
+    }
+
+    /**
+     * Constructor. Also sets action points and health to their respective maximum values.
+     *
+     * @param name            the name of the being.
+     * @param maxHealth       the maximum health of the being.
+     * @param maxActionPoints the maximum action points this being can perform, per turn.
+     * @param deck            the ids of the cards in the deck that the being has
+     */
+    public Being(String name, int maxHealth, int maxActionPoints, int[] deck) {
+        this(name, maxHealth, maxActionPoints, Arrays.copyOf(deck, Math.max(deck.length, 1)), deck.length);
+    }
+
+    /**
+     * Constructor. Also sets action points and health to their respective maximum values. Uses the given array as
+     * the deck without copying it. The array may be shared by other beings as long as none of them changes it:
+     * addToDeck never writes into a full array.
+     *
+     * @param name            the name of the being.
+     * @param maxHealth       the maximum health of the being.
+     * @param maxActionPoints the maximum action points this being can perform, per turn.
+     * @param deck            the ids of the cards in the deck that the being has, in its first deckSize slots.
+     * @param deckSize        the number of cards in the deck; deck.length if the array is shared.
+     */
+    protected Being(String name, int maxHealth, int maxActionPoints, int[] deck, int deckSize) {
         this.name = name;
         this.maxHealth = maxHealth;
         this.health = maxHealth;
         this.actionPoints = maxActionPoints;
         this.maxActionPoints = maxActionPoints;
-        this.deck = new ArrayList<>(deck);
+        this.deck = deck;
+        this.deckSize = deckSize;
         this.defense = 0;
         this.shield = 0;
         this.strength = 0;
 
         this.drawSize = DEFAULT_DRAW_SIZE;
 
-        drawPile = new LinkedList<>();
-        actionDeck = new ArrayList<>();
-        discardPile = new ArrayList<>();
+        random = new SplittableRandom();
+    }
+
+    /**
+     * Copy constructor. The copy has the same stats, deck and piles as the original, but its own random stream,
+     * and it reports its events to nobody.
+     *
+     * @param other the being to copy.
+     */
+    protected Being(Being other) {
+        name = other.name;
+        maxHealth = other.maxHealth;
+        health = other.health;
+        actionPoints = other.actionPoints;
+        maxActionPoints = other.maxActionPoints;
+        defense = other.defense;
+        deck = other.deck.clone();
+        deckSize = other.deckSize;
+        shield = other.shield;
+        strength = other.strength;
+        drawSize = other.drawSize;
+        battleDeck = other.battleDeck.clone();
+        order = other.order.clone();
+        battleDeckSize = other.battleDeckSize;
+        discardStart = other.discardStart;
+        handStart = other.handStart;
+        drawStart = other.drawStart;
+        actionDeckCounts = other.actionDeckCounts.clone();
+        catalog = other.catalog;
+        random = new SplittableRandom();
+    }
+
+    /**
+     * Sets the source of randomness for shuffling and any other random choices this being makes.
+     * BattleManager gives every being its own stream at the start of each battle.
+     *
+     * @param random the random stream this being should use.
+     */
+    public void setRandom(SplittableRandom random) {
+        assert random != null;
+        this.random = random;
+    }
+
+    /**
+     * @return The listener told about everything this being does in battle.
+     */
+    public BattleEventListener getEventListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener told about everything this being does in battle. BattleManager sets this for every being.
+     *
+     * @param listener the listener, BattleEventListener.NONE to ignore events.
+     */
+    public void setEventListener(BattleEventListener listener) {
+        assert listener != null;
+        this.listener = listener;
     }
 
     /**
@@ -54,10 +164,35 @@ public abstract class Being {
      * Action deck is empty. Draw pile contains all player's cards shuffled. Discard pile is empty.
      */
     public void initializeDeck() {
-        discardPile.clear();
-        actionDeck.clear();
-        drawPile.addAll(deck);
-        Collections.shuffle(drawPile);
+        initializeDeck(Catalog.getCurrent());
+    }
+
+    /**
+     * Should be called before starting a battle. Like initializeDeck(), but takes the cards from the given catalog,
+     * so that the battle keeps playing the cards it started with if the catalog is reloaded.
+     *
+     * @param catalog Catalog the battle started with.
+     */
+    public void initializeDeck(Catalog catalog) {
+        this.catalog = catalog;
+        battleDeckSize = deckSize;
+        if (battleDeck.length < battleDeckSize) {
+            battleDeck = new Card[battleDeckSize];
+            order = new int[battleDeckSize];
+        }
+        for (int i = 0; i < battleDeckSize; i++) {
+            battleDeck[i] = catalog.getCard(deck[i]);
+            order[i] = i;
+        }
+        if (actionDeckCounts.length < catalog.getCardCount()) {
+            actionDeckCounts = new int[catalog.getCardCount()];
+        } else {
+            Arrays.fill(actionDeckCounts, 0);
+        }
+        discardStart = 0;
+        handStart = 0;
+        drawStart = 0;
+        shuffle(0, battleDeckSize);
     }
 
     /**
@@ -65,25 +200,99 @@ public abstract class Being {
      * Or, if the being's action deck is not discarded, draw more cards up to the being's draw capacity.
      */
     public void drawCards() {
-        for (int i = actionDeck.size(); i < drawSize; i++) {
-            // exit if being has already drawn their entire deck
-            if (actionDeck.size() == deck.size()) {
-                return;
+        while (drawStart - handStart < drawSize) {
+            // fill draw pile from discard pile as necessary
+            if (drawStart == battleDeckSize) {
+                // exit if being has already drawn every card it has left
+                if (discardStart == handStart) {
+                    return;
+                }
+                reshuffleDiscardPile();
             }
 
-            // fill draw pile from discard pile as necessary
-            if (drawPile.isEmpty()) {
-                // Reset this player's draw pile
-                drawPile.addAll(discardPile);
-                discardPile.clear();
-                Collections.shuffle(drawPile);
+            // The top of the draw pile joins the action deck just by moving the boundary.
+            actionDeckCounts[battleDeck[order[drawStart]].getId()]++;
+            drawStart++;
+        }
+    }
+
+    /**
+     * Turns the discard pile into a freshly shuffled draw pile. Must only be called when the draw pile is empty.
+     */
+    private void reshuffleDiscardPile() {
+        assert drawStart == battleDeckSize;
+        // Rotate [discard | hand] into [hand | discard] in place, then the old discard pile is the draw pile.
+        int handSize = drawStart - handStart;
+        reverse(discardStart, drawStart);
+        reverse(discardStart, discardStart + handSize);
+        reverse(discardStart + handSize, drawStart);
+        handStart = discardStart;
+        drawStart = discardStart + handSize;
+        shuffle(drawStart, battleDeckSize);
+    }
+
+    /**
+     * Takes the given card out of the action deck, putting it in the discard pile, or setting it aside for the rest of
+     * the battle if it is single use. Does nothing if the card is not in the action deck.
+     *
+     * @param card the card that was played.
+     */
+    protected void discardFromActionDeck(Card card) {
+        if (!actionDeckContains(card)) {
+            return;
+        }
+        int position = actionDeckPosition(card);
+        actionDeckCounts[card.getId()]--;
+        // Swap the card to the front of the action deck, where growing the discard pile takes it over.
+        swap(position, handStart);
+        if (card.isSingleUse()) {
+            // Swap it once more, over the boundary between the set-aside cards and the discard pile.
+            swap(handStart, discardStart);
+            discardStart++;
+        }
+        handStart++;
+    }
+
+    /**
+     * @param card the card to look for.
+     * @return the position in order of the given card in the action deck, or -1 if it is not there.
+     */
+    private int actionDeckPosition(Card card) {
+        for (int i = handStart; i < drawStart; i++) {
+            if (battleDeck[order[i]].getId() == card.getId()) {
+                return i;
             }
+        }
+        return -1;
+    }
 
-            Card card = drawPile.remove(0);
-            actionDeck.add(card);
+    /**
+     * Shuffles order[from, to) in place using this being's random stream.
+     */
+    private void shuffle(int from, int to) {
+        for (int i = to - 1; i > from; i--) {
+            swap(i, from + random.nextInt(i - from + 1));
         }
     }
 
+    /**
+     * Reverses order[from, to) in place.
+     */
+    private void reverse(int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            swap(i, j);
+        }
+    }
+
+    /**
+     * Swaps order[i] and order[j].
+     */
+    private void swap(int i, int j) {
+        int temp = order[i];
+        order[i] = order[j];
+        order[j] = temp;
+    }
+
     public abstract void playCard(Card card, Being target);
 
     /**
@@ -186,21 +395,20 @@ public abstract class Being {
      */
     public void turnStartStatReset() {
         if (defense > 0) {
-            System.out.println(name + "'s defense wears off.");
+            int wornOff = defense;
             defense = 0;
+            listener.buffWoreOff(this, BattleEventListener.Stat.DEFENSE, wornOff);
         }
         if (shield > 0) {
-            System.out.println(name + "'s shield wears off.");
+            int wornOff = shield;
             shield = 0;
+            listener.buffWoreOff(this, BattleEventListener.Stat.SHIELD, wornOff);
         }
         if (strength > 0) {
-            if (strength == 1) {
-                System.out.println(name + "'s strength wears off.");
-                strength = 0;
-            } else {
-                System.out.println((int) Math.ceil((double) strength / 2) + " of " + name + "'s " + strength + " strength wears off.");
-                strength /= 2;
-            }
+            // Half of the strength (rounded up) wears off each turn.
+            int wornOff = strength - strength / 2;
+            strength /= 2;
+            listener.buffWoreOff(this, BattleEventListener.Stat.STRENGTH, wornOff);
         }
         resetActionPoints();
     }
@@ -246,6 +454,18 @@ public abstract class Being {
         health = Math.max(health - damage, 0);
     }
 
+    /**
+     * Takes the damage a forecast against this being predicts: the shield loses what it absorbs, and health what
+     * gets through. Same as takeDamage, if the stats have not changed since the forecast.
+     *
+     * @param forecast Forecast of a card against this being, made with its current stats.
+     */
+    public void applyDamage(DamageForecast forecast) {
+        assert forecast.getTarget() == this;
+        shield -= forecast.getShieldAbsorbed();
+        health = Math.max(health - forecast.getDamage(), 0);
+    }
+
     /**
      * @param health new health, must be non-negative
      */
@@ -255,25 +475,81 @@ public abstract class Being {
     }
 
     /**
+     * Returns the same string as the last call if none of the stats it shows have changed since.
+     *
      * @return The health / maxHealth of the being in String form.
      */
     public String healthStatus() {
-        if (health <= 0) {
-            return name + " is dead.";
+        if (status != null && name == statusName && health == statusHealth && maxHealth == statusMaxHealth
+                && defense == statusDefense && shield == statusShield && strength == statusStrength) {
+            return status;
         }
 
-        String output = name + " has " + health + "/" + maxHealth + " health";
-        output += (defense > 0) ? " and " + defense + " defense" : "";
-        output += (shield > 0) ? " and " + shield + " shield" : "";
-        output += (strength > 0) ? " and " + strength + " strength" : "";
-        return output.trim() + ".";
+        StringBuilder output = new StringBuilder(64).append(name);
+        if (health <= 0) {
+            output.append(" is dead");
+        } else {
+            output.append(" has ").append(health).append('/').append(maxHealth).append(" health");
+            if (defense > 0) {
+                output.append(" and ").append(defense).append(" defense");
+            }
+            if (shield > 0) {
+                output.append(" and ").append(shield).append(" shield");
+            }
+            if (strength > 0) {
+                output.append(" and ").append(strength).append(" strength");
+            }
+        }
+        status = output.append('.').toString();
+        statusName = name;
+        statusHealth = health;
+        statusMaxHealth = maxHealth;
+        statusDefense = defense;
+        statusShield = shield;
+        statusStrength = strength;
+        return status;
     }
 
     /**
-     * @return Copy of the player's action deck
+     * Returns a read-only view of the action deck that always shows its current contents, so polling it allocates
+     * nothing. Playing or drawing cards changes what the view shows, so use copyActionDeck to iterate while playing.
+     *
+     * @return Read-only view of the being's action deck
      */
     public List<Card> getActionDeck() {
-        return new ArrayList<>(actionDeck);
+        if (actionDeckView == null) {
+            actionDeckView = new ActionDeckView();
+        }
+        return actionDeckView;
+    }
+
+    /**
+     * @return Copy of the being's action deck
+     */
+    public List<Card> copyActionDeck() {
+        List<Card> actionDeck = new ArrayList<>(drawStart - handStart);
+        for (int i = handStart; i < drawStart; i++) {
+            actionDeck.add(battleDeck[order[i]]);
+        }
+        return actionDeck;
+    }
+
+    /**
+     * The cards in slots handStart to drawStart of order.
+     */
+    private final class ActionDeckView extends AbstractList<Card> implements RandomAccess {
+        @Override
+        public Card get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+            }
+            return battleDeck[order[handStart + index]];
+        }
+
+        @Override
+        public int size() {
+            return drawStart - handStart;
+        }
     }
 
     /**
@@ -283,14 +559,81 @@ public abstract class Being {
      * @return True iff being's action deck contains the current card. Returns false if card is null
      */
     public boolean actionDeckContains(Card card) {
-        return (card != null) && actionDeck.contains(card);
+        return (card != null) && card.getId() < actionDeckCounts.length && actionDeckCounts[card.getId()] > 0;
     }
 
     /**
      * @return True iff the action deck is empty
      */
     public boolean isActionDeckEmpty() {
-        return actionDeck.isEmpty();
+        return handStart == drawStart;
+    }
+
+    /**
+     * @return The number of cards in the action deck.
+     */
+    public int getActionDeckSize() {
+        return drawStart - handStart;
+    }
+
+    /**
+     * @return The number of ints writeState writes for this being right now. May change between snapshots (an
+     *         enemy's depends on its current intent), so recompute it for each one.
+     */
+    protected int stateSize() {
+        return 11 + battleDeckSize;
+    }
+
+    /**
+     * Writes everything about this being that can change during a battle into the given array.
+     *
+     * @param data   array to write into
+     * @param offset index of the first int to write
+     * @return index just past the last int written
+     */
+    protected int writeState(int[] data, int offset) {
+        data[offset++] = health;
+        data[offset++] = maxHealth;
+        data[offset++] = actionPoints;
+        data[offset++] = maxActionPoints;
+        data[offset++] = defense;
+        data[offset++] = shield;
+        data[offset++] = strength;
+        data[offset++] = drawSize;
+        data[offset++] = discardStart;
+        data[offset++] = handStart;
+        data[offset++] = drawStart;
+        System.arraycopy(order, 0, data, offset, battleDeckSize);
+        return offset + battleDeckSize;
+    }
+
+    /**
+     * Restores this being to the state previously written by writeState during the same battle.
+     *
+     * @param data   array to read from
+     * @param offset index of the first int to read
+     * @return index just past the last int read
+     */
+    protected int readState(int[] data, int offset) {
+        health = data[offset++];
+        maxHealth = data[offset++];
+        actionPoints = data[offset++];
+        maxActionPoints = data[offset++];
+        defense = data[offset++];
+        shield = data[offset++];
+        strength = data[offset++];
+        drawSize = data[offset++];
+        discardStart = data[offset++];
+        handStart = data[offset++];
+        drawStart = data[offset++];
+        System.arraycopy(data, offset, order, 0, battleDeckSize);
+
+        // The per-card counts follow from the action deck, so they are rebuilt rather than stored.
+        Arrays.fill(actionDeckCounts, 0);
+        for (int i = handStart; i < drawStart; i++) {
+            actionDeckCounts[battleDeck[order[i]].getId()]++;
+        }
+        return offset + battleDeckSize;
     }
 
     /**
@@ -301,10 +644,66 @@ public abstract class Being {
     }
 
     /**
-     * @return The deck of the current being.
+     * @return The catalog the being's current battle started with, or the current one before its first battle.
+     */
+    protected Catalog getCatalog() {
+        return (catalog == null) ? Catalog.getCurrent() : catalog;
+    }
+
+    /**
+     * Returns a read-only view of the deck that always shows its current contents, looked up in the current catalog.
+     *
+     * @return Read-only view of the deck of the current being.
      */
     public List<Card> getDeck() {
-        return new ArrayList<>(deck);
+        if (deckView == null) {
+            deckView = new DeckView();
+        }
+        return deckView;
+    }
+
+    /**
+     * @return Copy of the deck of the current being.
+     */
+    public List<Card> copyDeck() {
+        return CardFactory.toCards(getDeckIds());
+    }
+
+    /**
+     * The cards with the ids in the first deckSize slots of deck.
+     */
+    private final class DeckView extends AbstractList<Card> implements RandomAccess {
+        @Override
+        public Card get(int index) {
+            if (index < 0 || index >= deckSize) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + deckSize);
+            }
+            return CardFactory.getCard(deck[index]);
+        }
+
+        @Override
+        public int size() {
+            return deckSize;
+        }
+    }
+
+    /**
+     * @return The ids of the cards in the deck of the current being.
+     */
+    public int[] getDeckIds() {
+        return Arrays.copyOf(deck, deckSize);
+    }
+
+    /**
+     * Adds a card into the being's deck.
+     *
+     * @param id the id of the card to be added into the being's deck.
+     */
+    protected void addToDeck(int id) {
+        if (deckSize == deck.length) {
+            deck = Arrays.copyOf(deck, deckSize * 2);
+        }
+        deck[deckSize++] = id;
     }
 
     /**
@@ -312,6 +711,6 @@ public abstract class Being {
      */
     @Override
     public String toString() {
-        return name + ": " + health + "/" + maxHealth + ". Deck: " + deck;
+        return name + ": " + health + "/" + maxHealth + ". Deck: " + getDeck();
     }
 }
@@ -2,6 +2,7 @@
  * Immutable representation of a card.
  */
 public class Card implements Comparable<Card> {
+    private transient int id; // dense id handed out by Catalog, not part of the card data files
     private String name;
     private int cost;
     private boolean playable;
@@ -13,6 +14,11 @@ public class Card implements Comparable<Card> {
     private boolean singleUse;
     private int strength;
 
+    private static final int CACHED_STRENGTHS = 32; // descriptions for users with less strength than this are cached
+    private static final String ANSI_RESET = "\u001B[0m";
+    private static final String ANSI_GREEN = "\u001B[32m";
+    private transient String[] descriptions; // description for a user with strength i, built on first use
+
     /**
      * Constructor. Defense cards should have hits = 0.
      *
@@ -39,6 +45,27 @@ public class Card implements Comparable<Card> {
         this.strength = strength;
     }
 
+    /**
+     * @return Dense id of the card, handed out by Catalog. Cards added after the first load get larger ids, so ids
+     * do not follow the alphabetical order of names; compare cards to sort them by name.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Copies the card with the given id. Only Catalog should call this: it keeps copies of the cards it is given,
+     * so publishing a catalog never changes a card another catalog or thread already uses.
+     *
+     * @param id Dense id of the copy.
+     * @return Copy of this card with the given id.
+     */
+    Card withId(int id) {
+        Card copy = new Card(name, cost, playable, damage, hits, defense, attackAll, shield, singleUse, strength);
+        copy.id = id;
+        return copy;
+    }
+
     /**
      * @return Name of the card.
      */
@@ -106,6 +133,13 @@ public class Card implements Comparable<Card> {
         return !playable;
     }
 
+    /**
+     * @return True iff the card is played by players rather than enemies.
+     */
+    public boolean isPlayerCard() {
+        return playable;
+    }
+
     /**
      * @return True iff the card is single use (per combat).
      */
@@ -114,32 +148,47 @@ public class Card implements Comparable<Card> {
     }
 
     /**
-     * Causes this card to be applied by the user against the opponent. Also prints out the damage forecast
-     * and state of the beings after damage was taken. Takes all of the opponent's defense and shield into account.
+     * Forecasts the damage this card would deal to the opponent if the user played it now. See DamageForecast.
+     *
+     * @param user     Being that would use the card
+     * @param opponent Being that user would use the card against
+     * @return Forecast computed from the current stats of both.
+     */
+    public DamageForecast forecast(Being user, Being opponent) {
+        return DamageForecast.of(user, this, opponent);
+    }
+
+    /**
+     * Causes this card to be applied by the user against the opponent, reporting what happened to the user's
+     * BattleEventListener. Takes all of the opponent's defense and shield into account.
      *
      * @param user     Being that uses the card
      * @param opponent Being that user uses the card against
      */
     public void play(Being user, Being opponent) {
+        BattleEventListener listener = user.getEventListener();
         if (damage * hits != 0) {
-            printForecast(user, opponent);
-            opponent.takeDamage(damage + user.getStrength(), hits);
-            System.out.println("\t" + opponent.healthStatus());
+            DamageForecast forecast = forecast(user, opponent);
+            opponent.applyDamage(forecast);
+            listener.damageDealt(user, opponent, this, forecast);
+            if (forecast.isShieldBroken()) {
+                listener.shieldBroken(user, opponent, this);
+            }
         }
         if (defense != 0) {
             user.setDefense(user.getDefense() + defense);
-            System.out.println("\t" + user.getName() + " now has " + user.getDefense() + " defense.");
+            listener.buffApplied(user, this, BattleEventListener.Stat.DEFENSE, defense);
         }
         if (shield != 0) {
             user.increaseShield(shield);
-            System.out.println("\t" + user.getName() + " now has " + user.getShield() + " shield.");
+            listener.buffApplied(user, this, BattleEventListener.Stat.SHIELD, shield);
         }
         if (strength != 0) {
             user.increaseStrength(strength);
-            System.out.println("\t" + user.getName() + " now has " + user.getStrength() + " strength.");
+            listener.buffApplied(user, this, BattleEventListener.Stat.STRENGTH, strength);
         }
         if (isSingleUse()) {
-            System.out.println("\t" + name + " has temporarily been removed from " + user.getName() + "'s deck.");
+            listener.cardExhausted(user, this);
         }
     }
 
@@ -151,84 +200,63 @@ public class Card implements Comparable<Card> {
     }
 
     /**
-     * * @return a description of what this card does, ignoring the things it doesn't do.
+     * The description only depends on the card and the user's strength, so it is built once per strength and
+     * cached on the card. Cards are immutable, so the cache never goes stale; a catalog reload brings new cards.
+     *
+     * @return a description of what this card does, ignoring the things it doesn't do.
      */
     public String getDescription(Being user) {
-        String ANSI_RESET = "\u001B[0m";
-        String ANSI_GREEN = "\u001B[32m";
-        if (user.getStrength() == 0) {
-            ANSI_GREEN = "";
-            ANSI_RESET = "";
+        int userStrength = user.getStrength();
+        if (userStrength < 0 || userStrength >= CACHED_STRENGTHS) {
+            return buildDescription(userStrength);
         }
-        String description = name + " [" + cost + "]";
-        if (damage > 0) {
-            description += " Deals " + ANSI_GREEN + (damage + user.getStrength()) + ANSI_RESET + (hits != 1 ? "x" + hits : "") + " damage";
-            if (attackAll) {
-                description += " to all enemies.";
-            } else {
-                description += ".";
-            }
-        }
-        if (defense > 0) {
-            description += " Applies " + defense + " defense.";
+        // Racy but safe: at worst two threads build the same immutable string.
+        String[] cache = descriptions;
+        if (cache == null) {
+            cache = new String[CACHED_STRENGTHS];
+            descriptions = cache;
         }
-        if (shield > 0) {
-            description += " Applies " + shield + " shield.";
-        }
-        if (strength > 0) {
-            description += " Grants " + strength + " strength.";
-        }
-        if (singleUse) {
-            description += " Can only be used once per battle.";
+        String description = cache[userStrength];
+        if (description == null) {
+            description = buildDescription(userStrength);
+            cache[userStrength] = description;
         }
-        return description.trim();
+        return description;
     }
 
-    /**
-     * Forecasts the total damage dealt, based on the being's stats.
-     *
-     * @param target The intended target of the card.
-     */
-    public void printForecast(Being user, Being target) {
-        String ANSI_RESET = "\u001B[0m";
-        String ANSI_GREEN = "\u001B[32m";
-        if (user.getStrength() == 0) {
-            ANSI_RESET = "";
-            ANSI_GREEN = "";
-        }
-        if (target.getDefense() > 0) {
-            if (target.getDefense() >= damage + target.getStrength()) {
-                System.out.println("\t" + target.getName() + "'s defense mitigates all damage.");
-            } else {
-                System.out.println("\t" + target.getName() + "'s defense mitigates " + ANSI_GREEN + Math.min(target.getDefense(), damage) + ANSI_RESET + ((hits > 1) ? "x" + hits : "") + " damage.");
-            }
-        }
-        if (target.getShield() > 0 && target.getDefense() < damage) {
-            if (target.getShield() <= target.preShieldDamageCalculation(user, this)) {
-                System.out.println("\t" + target.getName() + "'s shield mitigates " + ANSI_GREEN + Math.min(target.getShield(), target.preShieldDamageCalculation(user, this)) + ANSI_RESET + " damage.");
+    private String buildDescription(int userStrength) {
+        StringBuilder description = new StringBuilder(64);
+        description.append(name).append(" [").append(cost).append(']');
+        if (damage > 0) {
+            description.append(" Deals ");
+            if (userStrength != 0) {
+                description.append(ANSI_GREEN).append(damage + userStrength).append(ANSI_RESET);
             } else {
-                System.out.println("\t" + target.getName() + "'s shield mitigates all (" + ANSI_GREEN + target.preShieldDamageCalculation(user, this) + ANSI_RESET + ") damage.");
+                description.append(damage);
             }
-            if (target.preShieldDamageCalculation(user, this) >= target.getShield()) {
-                System.out.println("\t" + name + " has broken " + target.getName() + "'s shields!");
+            if (hits != 1) {
+                description.append('x').append(hits);
             }
-        }
-        if (damage > 0 && hits > 0) {
-            System.out.println("\t" + name + " deals " + ANSI_GREEN + target.damageCalculation(user, this) + ANSI_RESET + " damage to " + target.getName() + ".");
+            description.append(attackAll ? " damage to all enemies." : " damage.");
         }
         if (defense > 0) {
-            System.out.println("\t" + name + " applies " + defense + " defense to self.");
+            description.append(" Applies ").append(defense).append(" defense.");
         }
         if (shield > 0) {
-            System.out.println("\t" + name + " applies " + shield + " shield to self.");
+            description.append(" Applies ").append(shield).append(" shield.");
         }
         if (strength > 0) {
-            System.out.println("\t" + name + " applies " + strength + " strength to self.");
+            description.append(" Grants ").append(strength).append(" strength.");
+        }
+        if (singleUse) {
+            description.append(" Can only be used once per battle.");
         }
+        return description.toString().trim();
     }
 
     /**
      * Compares this card to another card, returning an integer depending on the result.
+     * Cards are compared by name, so sorting cards sorts them alphabetically.
      *
      * @param other the card to compare this card to
      * @return int > 1 if this card is greater than the other card, 0 if they are equal, and int < 0 if the other card is greater.
@@ -2,33 +2,41 @@ import java.util.*;
 
 /**
  * Creates Cards
+ * <p>
+ * Looks cards up in the current Catalog, which is immutable, so lookups are safe from any thread and any game
+ * session. Every card has a dense integer id; see Catalog.
  */
 public class CardFactory {
-    private static Map<String, Card> nameToCard = new HashMap<>();
-    private static Set<Card> playerCards = new HashSet<>();
+
+    /**
+     * Adds the given cards, handing out ids to new ones in alphabetical order. Look the cards up afterwards: the
+     * catalog keeps copies.
+     *
+     * @param cards The cards to be added into the database of cards.
+     */
+    public static void addCards(List<Card> cards) {
+        Catalog.publishCards(cards);
+    }
 
     /**
      * @param card The card to be added into the database of cards.
      */
     public static void addCard(Card card) {
-        nameToCard.put(card.getName().toLowerCase(), card);
-        if (card.isPlayableBy(new Player("Example", 0, 0, new ArrayList<>(), 0))) {
-            playerCards.add(card);
-        }
+        Catalog.publishCards(Collections.singletonList(card));
     }
 
     /**
      * @return Set of all Cards
      */
     public static Set<Card> getAllCards() {
-        return new HashSet<>(nameToCard.values());
+        return new LinkedHashSet<>(Catalog.getCurrent().getAllCards());
     }
 
     /**
      * @return A read-only set of all the player cards.
      */
     public static Set<Card> getPlayerCards() {
-        return Collections.unmodifiableSet(playerCards);
+        return Catalog.getCurrent().getPlayerCards();
     }
 
     /**
@@ -38,6 +46,59 @@ public class CardFactory {
      * @return Card with given name, null if card not found
      */
     public static Card getCard(String name) {
-        return nameToCard.get(name.toLowerCase());
+        return Catalog.getCurrent().getCard(name);
+    }
+
+    /**
+     * Returns the card with the given id.
+     *
+     * @param id Id of the card to get
+     * @return Card with the given id, null if there is no such card
+     */
+    public static Card getCard(int id) {
+        return Catalog.getCurrent().getCard(id);
+    }
+
+    /**
+     * Returns the id of the card with the given name.
+     *
+     * @param name Name of the card
+     * @return id of the card, -1 if card not found
+     */
+    public static int getId(String name) {
+        Card card = getCard(name);
+        return (card == null) ? -1 : card.getId();
+    }
+
+    /**
+     * @return The number of card ids handed out. Every id is less than this.
+     */
+    public static int getCardCount() {
+        return Catalog.getCurrent().getCardCount();
+    }
+
+    /**
+     * @param cards Cards to convert
+     * @return ids of the given cards, in the same order
+     */
+    public static int[] toIds(List<Card> cards) {
+        int[] ids = new int[cards.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = cards.get(i).getId();
+        }
+        return ids;
+    }
+
+    /**
+     * @param ids ids to convert
+     * @return Cards with the given ids, in the same order
+     */
+    public static List<Card> toCards(int[] ids) {
+        Catalog catalog = Catalog.getCurrent();
+        List<Card> cards = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            cards.add(catalog.getCard(id));
+        }
+        return cards;
     }
 }
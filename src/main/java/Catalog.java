@@ -0,0 +1,367 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * An immutable snapshot of every card and enemy type in the game. Safe to share between threads and between game
+ * sessions; CardFactory and EnemyFactory answer from the current one.
+ * <p>
+ * Every card gets a dense integer id, so decks can be stored as int arrays and cards looked up by array index. Ids
+ * are handed out in alphabetical order of name within each batch of new cards, after the ids of earlier batches, so
+ * ids only follow alphabetical order within the first load; sort ids by getNameRanks to sort them by name. A card that
+ * replaces one of the same name keeps its id, even across reloads, and a card a reload removes keeps its id slot, so
+ * decks holding it still resolve. Adding cards or enemies never changes a catalog, nor the cards given to it (a
+ * catalog keeps copies): it builds a new one and publishes it. Battles keep the catalog they started with (see
+ * BattleManager), so publishing only affects new battles and later lookups. See CatalogWatcher for reloading the
+ * catalog when its data files change.
+ */
+public final class Catalog {
+    private static final Catalog EMPTY = new Catalog(0, new LinkedHashMap<>(), new Card[0], new LinkedHashMap<>());
+    private static final AtomicReference<Catalog> CURRENT = new AtomicReference<>(EMPTY);
+
+    private final long version; // one more than the catalog this one was built from
+
+    private final Map<String, Card> nameToCard; // keyed by lower case name, in load order so random picks are reproducible
+    private final Card[] idToCard; // indexed by card id
+    private final Set<Card> playerCards; // cards a player can have, in load order
+    private final Map<String, EnemyTemplate> nameToEnemy; // keyed by lower case name, in load order
+    private final int[] nameRanks; // indexed by card id: the card's position in name order, -1 for unused ids
+    private final int[] idsByName; // ids of every card in name order, the inverse of nameRanks
+    private volatile EncounterPlanner encounterPlanner; // built on first use
+
+    private Catalog(long version, LinkedHashMap<String, Card> nameToCard, Card[] idToCard,
+                    LinkedHashMap<String, EnemyTemplate> nameToEnemy) {
+        this.version = version;
+        this.nameToCard = Collections.unmodifiableMap(nameToCard);
+        this.idToCard = idToCard;
+        this.nameToEnemy = Collections.unmodifiableMap(nameToEnemy);
+
+        Set<Card> playable = new LinkedHashSet<>();
+        for (Card card : nameToCard.values()) {
+            if (card.isPlayerCard()) {
+                playable.add(card);
+            }
+        }
+        playerCards = Collections.unmodifiableSet(playable);
+
+        List<Card> byName = new ArrayList<>(idToCard.length);
+        for (Card card : idToCard) {
+            if (card != null) {
+                byName.add(card);
+            }
+        }
+        Collections.sort(byName);
+        nameRanks = new int[idToCard.length];
+        Arrays.fill(nameRanks, -1);
+        idsByName = new int[byName.size()];
+        for (int rank = 0; rank < idsByName.length; rank++) {
+            idsByName[rank] = byName.get(rank).getId();
+            nameRanks[idsByName[rank]] = rank;
+        }
+    }
+
+    /**
+     * @return The catalog the game currently uses.
+     */
+    public static Catalog getCurrent() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Publishes a catalog with the given cards added to the current one.
+     *
+     * @param cards Cards to add. Cards with the name of an existing card replace it.
+     * @return The published catalog.
+     */
+    public static Catalog publishCards(Collection<Card> cards) {
+        while (true) {
+            Catalog current = CURRENT.get();
+            Catalog next = current.withCards(cards);
+            if (CURRENT.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Publishes a catalog with the given enemy types added to the current one.
+     *
+     * @param enemies Enemy types to add. Their cards must be in the current catalog.
+     * @return The published catalog.
+     */
+    public static Catalog publishEnemies(Collection<EnemyTemplate> enemies) {
+        while (true) {
+            Catalog current = CURRENT.get();
+            Catalog next = current.withEnemies(enemies);
+            if (CURRENT.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Publishes a catalog holding exactly the given cards and enemy types, in place of the current one. Cards keep
+     * the ids of the cards of the same name in the current catalog.
+     *
+     * @param cards   Every card.
+     * @param enemies Every enemy type. Their cards must be among the given cards.
+     * @param check   Throws IllegalArgumentException if the new catalog lacks something the game needs.
+     * @return The published catalog.
+     * @throws IllegalArgumentException if the cards or enemy types are invalid (see replacedWith), or check throws.
+     *                                  Nothing is published.
+     */
+    public static Catalog publishReplacement(Collection<Card> cards, Collection<EnemyTemplate> enemies,
+                                             Consumer<Catalog> check) {
+        while (true) {
+            Catalog current = CURRENT.get();
+            Catalog replacement = current.replacedWith(cards, enemies);
+            check.accept(replacement);
+            if (CURRENT.compareAndSet(current, replacement)) {
+                return replacement;
+            }
+        }
+    }
+
+    /**
+     * Parses cards and enemy types in the JSON format of cards.json and enemies.json, and publishes them as a
+     * replacement catalog. See publishReplacement.
+     *
+     * @param cardsJson   JSON array of cards. Not closed.
+     * @param enemiesJson JSON array of enemy types. Not closed.
+     * @param check       Throws IllegalArgumentException if the new catalog lacks something the game needs.
+     * @return The published catalog.
+     * @throws IllegalArgumentException if the JSON is malformed or describes an invalid catalog. Nothing is
+     *                                  published.
+     */
+    public static Catalog load(Reader cardsJson, Reader enemiesJson, Consumer<Catalog> check) {
+        List<Card> cards;
+        List<EnemyTemplate> enemies;
+        try {
+            cards = CatalogCodec.readCards(cardsJson);
+            enemies = CatalogCodec.readEnemies(enemiesJson);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed catalog: " + e.getMessage(), e);
+        }
+        if (cards.isEmpty() || enemies.isEmpty()) {
+            throw new IllegalArgumentException("Catalog has no cards or no enemies");
+        }
+        return publishReplacement(cards, enemies, check);
+    }
+
+    /**
+     * Returns a catalog holding exactly the given cards and enemy types. Cards keep the ids of the cards of the same
+     * name in this catalog, even ones removed by an earlier replacement; new cards get new ids in alphabetical
+     * order. Cards that are gone are no longer found by name, but still by id (see getRemovedCards), so decks that
+     * hold them keep working.
+     *
+     * @param cards   Every card.
+     * @param enemies Every enemy type. Their cards must be among the given cards.
+     * @return The new catalog. This one is unchanged.
+     * @throws IllegalArgumentException if two cards share a name, a card has no name or a negative cost, or an
+     *                                  enemy type is invalid (see EnemyTemplate.resolve).
+     */
+    public Catalog replacedWith(Collection<Card> cards, Collection<EnemyTemplate> enemies) {
+        for (Card card : cards) {
+            if (card.getName() == null || card.getCost() < 0) {
+                throw new IllegalArgumentException("Card " + card.getName() + " needs a name and a cost of at least 0");
+            }
+        }
+        List<Card> sorted = new ArrayList<>(cards);
+        sorted.sort(Comparator.comparing(Card::getName));
+
+        Map<String, Integer> oldIds = idsByName();
+        Map<String, Integer> newIds = new HashMap<>();
+        int nextId = idToCard.length;
+        for (Card card : sorted) {
+            String name = card.getName().toLowerCase();
+            if (newIds.containsKey(name)) {
+                throw new IllegalArgumentException("There are two cards named " + card.getName());
+            }
+            Integer previous = oldIds.get(name);
+            newIds.put(name, (previous != null) ? previous : nextId++);
+        }
+        Card[] ids = Arrays.copyOf(idToCard, nextId); // removed cards keep their slots
+        LinkedHashMap<String, Card> names = new LinkedHashMap<>();
+        for (Card card : cards) {
+            String name = card.getName().toLowerCase();
+            Card copy = card.withId(newIds.get(name));
+            ids[copy.getId()] = copy;
+            names.put(name, copy);
+        }
+
+        LinkedHashMap<String, EnemyTemplate> enemyNames = new LinkedHashMap<>();
+        for (EnemyTemplate enemy : enemies) {
+            enemyNames.put(enemy.name.toLowerCase(), enemy.resolve(names, ids));
+        }
+        return new Catalog(version + 1, names, ids, enemyNames);
+    }
+
+    /**
+     * Returns a catalog with the given cards added. New cards get ids after every existing one, in alphabetical
+     * order among themselves. Enemy types are resolved against the new cards.
+     *
+     * @param cards Cards to add. Cards with the name of an existing card replace it.
+     * @return The new catalog. This one is unchanged.
+     */
+    public Catalog withCards(Collection<Card> cards) {
+        List<Card> sorted = new ArrayList<>(cards);
+        sorted.sort(Comparator.comparing(Card::getName));
+
+        Map<String, Integer> oldIds = idsByName();
+        LinkedHashMap<String, Card> names = new LinkedHashMap<>(nameToCard);
+        List<Card> ids = new ArrayList<>(Arrays.asList(idToCard));
+        for (Card card : sorted) {
+            String name = card.getName().toLowerCase();
+            Integer previous = oldIds.get(name);
+            Card copy = card.withId((previous != null) ? previous : ids.size());
+            if (previous != null) {
+                ids.set(previous, copy);
+            } else {
+                ids.add(copy);
+                oldIds.put(name, copy.getId());
+            }
+            names.put(name, copy);
+        }
+        Card[] idArray = ids.toArray(new Card[0]);
+
+        LinkedHashMap<String, EnemyTemplate> enemies = new LinkedHashMap<>();
+        for (Map.Entry<String, EnemyTemplate> entry : nameToEnemy.entrySet()) {
+            enemies.put(entry.getKey(), entry.getValue().resolve(names, idArray));
+        }
+        return new Catalog(version + 1, names, idArray, enemies);
+    }
+
+    /**
+     * @return Id of every card that has one, removed or not, keyed by lower case name.
+     */
+    private Map<String, Integer> idsByName() {
+        Map<String, Integer> ids = new HashMap<>();
+        for (Card card : idToCard) {
+            if (card != null) {
+                ids.put(card.getName().toLowerCase(), card.getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns a catalog with the given enemy types added.
+     *
+     * @param enemies Enemy types to add. Their cards must be in this catalog.
+     * @return The new catalog. This one is unchanged.
+     */
+    public Catalog withEnemies(Collection<EnemyTemplate> enemies) {
+        LinkedHashMap<String, EnemyTemplate> names = new LinkedHashMap<>(nameToEnemy);
+        for (EnemyTemplate enemy : enemies) {
+            names.put(enemy.name.toLowerCase(), enemy.resolve(nameToCard, idToCard));
+        }
+        return new Catalog(version + 1, new LinkedHashMap<>(nameToCard), idToCard, names);
+    }
+
+    /**
+     * @return The number of catalogs published before this one. Later catalogs have larger versions.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param name Name of the card, in any case.
+     * @return Card with the given name, null if card not found
+     */
+    public Card getCard(String name) {
+        return nameToCard.get(name.toLowerCase());
+    }
+
+    /**
+     * @param id Id of the card.
+     * @return Card with the given id, null if no card ever had it. Cards removed by a reload are still found.
+     */
+    public Card getCard(int id) {
+        return (id >= 0 && id < idToCard.length) ? idToCard[id] : null;
+    }
+
+    /**
+     * @return The number of card ids handed out. Every id is less than this.
+     */
+    public int getCardCount() {
+        return idToCard.length;
+    }
+
+    /**
+     * Ranks every card by name, removed ones included, so ids can be sorted by name as plain ints.
+     *
+     * @return Rank of each card id in name order, -1 for ids without a card. Must not be changed.
+     */
+    int[] getNameRanks() {
+        return nameRanks;
+    }
+
+    /**
+     * @return Id of each card in name order, the inverse of getNameRanks. Must not be changed.
+     */
+    int[] getIdsByName() {
+        return idsByName;
+    }
+
+    /**
+     * @return Cards that earlier catalogs had but this one no longer finds by name; still found by id.
+     */
+    public List<Card> getRemovedCards() {
+        List<Card> removed = new ArrayList<>();
+        for (Card card : idToCard) {
+            if (card != null && nameToCard.get(card.getName().toLowerCase()) != card) {
+                removed.add(card);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return Read-only collection of every card, in load order.
+     */
+    public Collection<Card> getAllCards() {
+        return nameToCard.values();
+    }
+
+    /**
+     * @return Read-only set of the cards a player can have, in load order.
+     */
+    public Set<Card> getPlayerCards() {
+        return playerCards;
+    }
+
+    /**
+     * @param name Name (type) of the enemy, in any case.
+     * @return The template of the enemy type, null if enemy not found
+     */
+    public EnemyTemplate getEnemyTemplate(String name) {
+        return nameToEnemy.get(name.toLowerCase());
+    }
+
+    /**
+     * @return Read-only collection of every enemy type, in load order.
+     */
+    public Collection<EnemyTemplate> getAllEnemies() {
+        return nameToEnemy.values();
+    }
+
+    /**
+     * @return Planner fielding every enemy type in this catalog on a battlefield of GameModel.BATTLEFIELD_SIZE.
+     */
+    public EncounterPlanner getEncounterPlanner() {
+        EncounterPlanner planner = encounterPlanner;
+        if (planner == null) {
+            synchronized (this) {
+                planner = encounterPlanner;
+                if (planner == null) {
+                    planner = new EncounterPlanner(nameToEnemy.values(), GameModel.BATTLEFIELD_SIZE);
+                    encounterPlanner = planner;
+                }
+            }
+        }
+        return planner;
+    }
+}
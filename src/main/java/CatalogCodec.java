@@ -0,0 +1,235 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads cards.json and enemies.json with a streaming JsonReader, field by field, instead of through Gson's
+ * reflection. Accepts what Gson accepted: keys in any order, unknown keys are skipped, and missing or null values
+ * leave a field at 0, false or null.
+ * <p>
+ * Reflection is the slowest part of parsing the catalog on a cold JVM; see CodecBenchmark.
+ */
+public final class CatalogCodec {
+
+    private CatalogCodec() {
+    }
+
+    /**
+     * Reads a JSON array of cards.
+     *
+     * @param reader Reader to read from. Not closed.
+     * @return The cards, in file order.
+     * @throws IOException if the JSON is malformed or cannot be read.
+     * @throws IllegalStateException if the JSON does not have the shape of a card array.
+     */
+    public static List<Card> readCards(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        json.setLenient(true);
+        List<Card> cards = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            cards.add(readCard(json));
+        }
+        json.endArray();
+        return cards;
+    }
+
+    /**
+     * Reads a JSON array of enemy types.
+     *
+     * @param reader Reader to read from. Not closed.
+     * @return The enemy types, in file order.
+     * @throws IOException if the JSON is malformed or cannot be read.
+     * @throws IllegalStateException if the JSON does not have the shape of an enemy array.
+     */
+    public static List<EnemyTemplate> readEnemies(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        json.setLenient(true);
+        List<EnemyTemplate> enemies = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            enemies.add(readEnemy(json));
+        }
+        json.endArray();
+        return enemies;
+    }
+
+    private static Card readCard(JsonReader json) throws IOException {
+        String name = null;
+        int cost = 0;
+        boolean playable = false;
+        int damage = 0;
+        int hits = 0;
+        int defense = 0;
+        boolean attackAll = false;
+        int shield = 0;
+        boolean singleUse = false;
+        int strength = 0;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (key) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "cost":
+                    cost = json.nextInt();
+                    break;
+                case "playable":
+                    playable = json.nextBoolean();
+                    break;
+                case "damage":
+                    damage = json.nextInt();
+                    break;
+                case "hits":
+                    hits = json.nextInt();
+                    break;
+                case "defense":
+                    defense = json.nextInt();
+                    break;
+                case "attackAll":
+                    attackAll = json.nextBoolean();
+                    break;
+                case "shield":
+                    shield = json.nextInt();
+                    break;
+                case "singleUse":
+                    singleUse = json.nextBoolean();
+                    break;
+                case "strength":
+                    strength = json.nextInt();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        return new Card(name, cost, playable, damage, hits, defense, attackAll, shield, singleUse, strength);
+    }
+
+    private static EnemyTemplate readEnemy(JsonReader json) throws IOException {
+        String name = null;
+        List<String> deck = null;
+        List<String> cardDrops = null;
+        List<EnemyTemplate.LootEntry> loot = null;
+        Double dropChance = null;
+        Integer lootRolls = null;
+        double cost = 0;
+        int gold = 0;
+        int maxHealth = 0;
+        int maxActionPoints = 0;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (key) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "deck":
+                    deck = readStrings(json);
+                    break;
+                case "cardDrops":
+                    cardDrops = readStrings(json);
+                    break;
+                case "loot":
+                    loot = readLoot(json);
+                    break;
+                case "dropChance":
+                    dropChance = json.nextDouble();
+                    break;
+                case "lootRolls":
+                    lootRolls = json.nextInt();
+                    break;
+                case "cost":
+                    cost = json.nextDouble();
+                    break;
+                case "gold":
+                    gold = json.nextInt();
+                    break;
+                case "health":
+                    maxHealth = json.nextInt();
+                    break;
+                case "actionPoints":
+                    maxActionPoints = json.nextInt();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        return new EnemyTemplate(name, cardDrops, loot, dropChance, lootRolls, maxHealth, maxActionPoints, deck, cost,
+                gold);
+    }
+
+    private static List<EnemyTemplate.LootEntry> readLoot(JsonReader json) throws IOException {
+        List<EnemyTemplate.LootEntry> loot = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            String card = null;
+            double weight = 0;
+            LootTable.Rarity rarity = null;
+
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                    continue;
+                }
+                switch (key) {
+                    case "card":
+                        card = json.nextString();
+                        break;
+                    case "weight":
+                        weight = json.nextDouble();
+                        break;
+                    case "rarity":
+                        rarity = readRarity(json.nextString());
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+            loot.add(new EnemyTemplate.LootEntry(card, weight, rarity));
+        }
+        json.endArray();
+        return loot;
+    }
+
+    private static LootTable.Rarity readRarity(String name) {
+        for (LootTable.Rarity rarity : LootTable.Rarity.values()) {
+            if (rarity.name().equalsIgnoreCase(name)) {
+                return rarity;
+            }
+        }
+        throw new IllegalStateException("Unknown rarity " + name);
+    }
+
+    /**
+     * Reads a JSON array of strings. Used for card name lists, by SaveCodec too.
+     */
+    static List<String> readStrings(JsonReader json) throws IOException {
+        List<String> strings = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            strings.add(json.nextString());
+        }
+        json.endArray();
+        return strings;
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reloads the Catalog from a directory holding cards.json and enemies.json whenever either file changes, so balance
+ * changes take effect without restarting the process.
+ * <p>
+ * A daemon thread waits on a WatchService for the files to be written. Once they have been quiet for SETTLE_MILLIS
+ * (editors often write a file in several steps), both files are parsed and published as a replacement catalog, in
+ * one atomic step. Battles already running keep the catalog they started with; new battles use the new one. If the
+ * files do not parse or fail validation (see Catalog.load), the error is printed and the current catalog stays.
+ * <p>
+ * Enabled by setting the system property knightdeck.catalogDir to the directory; see GameModel.
+ */
+public final class CatalogWatcher {
+    public static final String DIRECTORY_PROPERTY = "knightdeck.catalogDir"; // system property naming the directory
+    public static final String CARDS_FILE = "cards.json";
+    public static final String ENEMIES_FILE = "enemies.json";
+    private static final long SETTLE_MILLIS = 200;
+
+    private static CatalogWatcher instance; // the watcher started by watch, guarded by CatalogWatcher.class
+
+    private final Path directory;
+    private final Consumer<Catalog> check; // run on every reload
+    private final WatchService watchService;
+
+    private CatalogWatcher(Path directory, Consumer<Catalog> check) throws IOException {
+        this.directory = directory;
+        this.check = check;
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Loads the catalog from the directory and starts watching it. Does nothing if a watcher is already running.
+     *
+     * @param directory Directory holding cards.json and enemies.json.
+     * @param check     Throws IllegalArgumentException if a catalog lacks something the game needs. Run on every
+     *                  reload.
+     * @return The loaded catalog.
+     * @throws IOException if the files cannot be read or the directory cannot be watched.
+     * @throws IllegalArgumentException if the files do not describe a valid catalog.
+     * @throws IllegalStateException if a watcher is already running on a different directory.
+     */
+    public static synchronized Catalog watch(Path directory, Consumer<Catalog> check) throws IOException {
+        if (instance != null) {
+            if (!instance.directory.equals(directory)) {
+                throw new IllegalStateException("Already watching " + instance.directory);
+            }
+            return Catalog.getCurrent();
+        }
+        Catalog catalog = reload(directory, check);
+        CatalogWatcher watcher = new CatalogWatcher(directory, check);
+        Thread thread = new Thread(watcher::run, "catalog-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        instance = watcher;
+        return catalog;
+    }
+
+    /**
+     * Parses the catalog files in the directory and publishes them as the new catalog.
+     *
+     * @param directory Directory holding cards.json and enemies.json.
+     * @param check     Throws IllegalArgumentException if the new catalog lacks something the game needs.
+     * @return The published catalog.
+     * @throws IOException if the files cannot be read.
+     * @throws IllegalArgumentException if the files do not describe a valid catalog. Nothing is published.
+     */
+    public static Catalog reload(Path directory, Consumer<Catalog> check) throws IOException {
+        try (Reader cardFile = Files.newBufferedReader(directory.resolve(CARDS_FILE));
+             Reader enemyFile = Files.newBufferedReader(directory.resolve(ENEMIES_FILE))) {
+            return Catalog.load(cardFile, enemyFile, check);
+        }
+    }
+
+    /**
+     * Reloads the catalog every time its files change, until the thread is interrupted.
+     */
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = pollCatalogEvents(key);
+                // Wait for the writes to settle before reading.
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= pollCatalogEvents(key);
+                }
+                if (changed) {
+                    try {
+                        Catalog catalog = reload(directory, check);
+                        System.err.println("Reloaded catalog version " + catalog.getVersion() + " from " + directory);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Error reloading catalog from " + directory + ", keeping the current one");
+                        e.printStackTrace();
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stop watching
+        }
+    }
+
+    /**
+     * Takes the events of the key and re-arms it.
+     *
+     * @return True iff one of the events is about a catalog file.
+     */
+    private static boolean pollCatalogEvents(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+                continue;
+            }
+            String file = event.context().toString();
+            if (file.equals(CARDS_FILE) || file.equals(ENEMIES_FILE)) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
@@ -0,0 +1,126 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Measures how long parsing the catalog and a save takes with the streaming codecs (CatalogCodec and SaveCodec's
+ * JSON methods) compared to the reflective Gson path they replaced.
+ * <p>
+ * The first parse in a JVM is what players wait for, and is dominated by class loading and, for Gson, reflection.
+ * Run once per codec so each gets a cold JVM, e.g.
+ * <pre>
+ *   java CodecBenchmark --codec gson
+ *   java CodecBenchmark --codec streaming
+ * </pre>
+ * Each run prints the time of the first parse, then the average over --iterations warm parses.
+ */
+public class CodecBenchmark {
+
+    /**
+     * One way of parsing the catalog and a save.
+     */
+    private interface Codec {
+        /**
+         * Parses the data and returns something derived from it, so the work cannot be optimized away.
+         */
+        int parse(String cards, String enemies, String save) throws IOException;
+    }
+
+    /**
+     * The streaming codecs the game uses.
+     */
+    private static int parseStreaming(String cards, String enemies, String save) throws IOException {
+        List<Card> cardList = CatalogCodec.readCards(new StringReader(cards));
+        List<EnemyTemplate> enemyList = CatalogCodec.readEnemies(new StringReader(enemies));
+        SaveState saveState = SaveCodec.readJson(new StringReader(save));
+        StringWriter out = new StringWriter();
+        SaveCodec.writeJson(saveState, out);
+        return cardList.size() + enemyList.size() + out.getBuffer().length();
+    }
+
+    /**
+     * The reflective Gson path the game used before the streaming codecs.
+     */
+    private static int parseGson(String cards, String enemies, String save) {
+        Gson gson = new Gson();
+        List<Card> cardList = gson.fromJson(new StringReader(cards), new TypeToken<List<Card>>() {
+        }.getType());
+        List<EnemyTemplate> enemyList = gson.fromJson(new StringReader(enemies), new TypeToken<List<EnemyTemplate>>() {
+        }.getType());
+        SaveState saveState = gson.fromJson(new StringReader(save), SaveState.class);
+        String out = new GsonBuilder().setPrettyPrinting().create().toJson(saveState);
+        return cardList.size() + enemyList.size() + out.length();
+    }
+
+    /**
+     * Reads a whole resource on the class path, e.g. a catalog data file.
+     */
+    static String readResource(String name) throws IOException {
+        InputStream stream = CodecBenchmark.class.getResourceAsStream(name);
+        if (stream == null) {
+            throw new FileNotFoundException(name);
+        }
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) >= 0) {
+                text.append(buffer, 0, read);
+            }
+            return text.toString();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String codecName = "streaming";
+        int iterations = 2000;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--codec":
+                    codecName = value;
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Codec codec;
+        if (codecName.equalsIgnoreCase("streaming")) {
+            codec = CodecBenchmark::parseStreaming;
+        } else if (codecName.equalsIgnoreCase("gson")) {
+            codec = CodecBenchmark::parseGson;
+        } else {
+            throw new IllegalArgumentException("Unknown codec " + codecName);
+        }
+
+        // Read the files first, so only parsing is timed.
+        String cards = readResource(CatalogWatcher.CARDS_FILE);
+        String enemies = readResource(CatalogWatcher.ENEMIES_FILE);
+        String save = "{\"name\": \"Benchmark\", \"health\": 42, \"maxHealth\": 55, \"maxActionPoints\": 3, "
+                + "\"gold\": 120, \"deck\": [\"Stab\", \"Stab\", \"Stab\", \"Shield\", \"Shield\", \"Shield\", "
+                + "\"Smash\", \"Defensive Stance\", \"Block\", \"Double Tap\", \"Sickle\", \"Scythe\"], "
+                + "\"difficulty\": 1.4884, \"drawSize\": 4}";
+
+        long start = System.nanoTime();
+        int check = codec.parse(cards, enemies, save);
+        long first = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            check += codec.parse(cards, enemies, save);
+        }
+        long warm = System.nanoTime() - start;
+
+        System.out.printf("%s: first parse %.2f ms, then %.1f us per parse over %d parses (check %d)%n",
+                codecName, first / 1e6, warm / 1e3 / Math.max(1, iterations), iterations, check);
+    }
+}
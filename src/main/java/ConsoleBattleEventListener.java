@@ -0,0 +1,97 @@
+/**
+ * Describes battle events as lines of text, printed to the console by default.
+ */
+public class ConsoleBattleEventListener implements BattleEventListener {
+    private static final String ANSI_RESET = "\u001B[0m";
+    private static final String ANSI_GREEN = "\u001B[32m";
+
+    private final boolean colored; // true iff damage boosted by strength is highlighted in green
+
+    /**
+     * Constructor.
+     *
+     * @param colored True iff damage boosted by strength should be highlighted with ANSI colors.
+     */
+    public ConsoleBattleEventListener(boolean colored) {
+        this.colored = colored;
+    }
+
+    /**
+     * Outputs a single line of the battle's description. Prints to the console unless overridden.
+     *
+     * @param line the line to output.
+     */
+    protected void println(String line) {
+        System.out.println(line);
+    }
+
+    @Override
+    public void damageDealt(Being user, Being target, Card card, DamageForecast forecast) {
+        int defenseMitigated = forecast.getDefenseMitigated();
+        int shieldAbsorbed = forecast.getShieldAbsorbed();
+        int damage = forecast.getDamage();
+        String green = (colored && user.getStrength() != 0) ? ANSI_GREEN : "";
+        String reset = (colored && user.getStrength() != 0) ? ANSI_RESET : "";
+        if (defenseMitigated > 0) {
+            if (damage == 0 && shieldAbsorbed == 0) {
+                println("\t" + target.getName() + "'s defense mitigates all damage.");
+            } else {
+                println("\t" + target.getName() + "'s defense mitigates " + green + defenseMitigated + reset
+                        + ((card.getHits() > 1) ? "x" + card.getHits() : "") + " damage.");
+            }
+        }
+        if (shieldAbsorbed > 0) {
+            if (damage > 0) {
+                println("\t" + target.getName() + "'s shield mitigates " + green + shieldAbsorbed + reset + " damage.");
+            } else {
+                println("\t" + target.getName() + "'s shield mitigates all (" + green + shieldAbsorbed + reset + ") damage.");
+            }
+        }
+        println("\t" + card.getName() + " deals " + green + damage + reset + " damage to " + target.getName() + ".");
+        println("\t" + target.healthStatus());
+    }
+
+    @Override
+    public void shieldBroken(Being user, Being target, Card card) {
+        println("\t" + card.getName() + " has broken " + target.getName() + "'s shields!");
+    }
+
+    @Override
+    public void buffApplied(Being being, Card card, Stat stat, int amount) {
+        switch (stat) {
+            case DEFENSE:
+                println("\t" + being.getName() + " now has " + being.getDefense() + " defense.");
+                break;
+            case SHIELD:
+                println("\t" + being.getName() + " now has " + being.getShield() + " shield.");
+                break;
+            case STRENGTH:
+                println("\t" + being.getName() + " now has " + being.getStrength() + " strength.");
+                break;
+        }
+    }
+
+    @Override
+    public void buffWoreOff(Being being, Stat stat, int amount) {
+        switch (stat) {
+            case DEFENSE:
+                println(being.getName() + "'s defense wears off.");
+                break;
+            case SHIELD:
+                println(being.getName() + "'s shield wears off.");
+                break;
+            case STRENGTH:
+                if (being.getStrength() == 0) {
+                    println(being.getName() + "'s strength wears off.");
+                } else {
+                    println(amount + " of " + being.getName() + "'s " + (amount + being.getStrength()) + " strength wears off.");
+                }
+                break;
+        }
+    }
+
+    @Override
+    public void cardExhausted(Being user, Card card) {
+        println("\t" + card.getName() + " has temporarily been removed from " + user.getName() + "'s deck.");
+    }
+}
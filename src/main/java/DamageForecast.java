@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a card would do to a target's defense, shield and health if played now. Computed once from the user's and
+ * target's current stats, by the same rules Card.play applies, so a preview always matches the outcome.
+ * <p>
+ * Immutable. Goes stale as soon as either being's stats change.
+ */
+public final class DamageForecast {
+    private final Being target;
+    private final int hits; // the number of hits
+    private final int hitDamage; // damage per hit before defense, strength included
+    private final int defenseMitigated; // damage per hit stopped by the target's defense
+    private final int shieldAbsorbed; // damage in total stopped by the target's shield
+    private final boolean shieldBroken; // true iff the target's shield is used up
+    private final int damage; // damage that gets through to the target's health
+    private final boolean lethal; // true iff the target dies
+    private final int overkill; // damage beyond what it takes to kill the target
+
+    private DamageForecast(Being target, int hits, int hitDamage, int defenseMitigated, int shieldAbsorbed,
+                           boolean shieldBroken, int damage, boolean lethal, int overkill) {
+        this.target = target;
+        this.hits = hits;
+        this.hitDamage = hitDamage;
+        this.defenseMitigated = defenseMitigated;
+        this.shieldAbsorbed = shieldAbsorbed;
+        this.shieldBroken = shieldBroken;
+        this.damage = damage;
+        this.lethal = lethal;
+        this.overkill = overkill;
+    }
+
+    /**
+     * Forecasts the damage of a card against a single target. A card that deals no damage gets an all-zero forecast.
+     *
+     * @param user   Being that would play the card
+     * @param card   Card to play
+     * @param target Being the card would hit
+     * @return Forecast for the target.
+     */
+    public static DamageForecast of(Being user, Card card, Being target) {
+        int hits = card.getHits();
+        if (card.getDamage() * hits == 0) {
+            return new DamageForecast(target, 0, 0, 0, 0, false, 0, false, 0);
+        }
+        int hitDamage = card.getDamage() + user.getStrength();
+        int defenseMitigated = Math.max(Math.min(target.getDefense(), hitDamage), 0);
+        int preShieldDamage = Math.max((hitDamage - target.getDefense()) * hits, 0);
+        int shieldBefore = target.getShield();
+        int shieldAbsorbed = Math.min(shieldBefore, preShieldDamage);
+        int damage = preShieldDamage - shieldAbsorbed;
+        return new DamageForecast(target, hits, hitDamage, defenseMitigated, shieldAbsorbed,
+                shieldBefore > 0 && preShieldDamage >= shieldBefore, damage, damage >= target.getHealth(),
+                Math.max(damage - target.getHealth(), 0));
+    }
+
+    /**
+     * Forecasts the damage of a card against each of the given targets, e.g. every enemy for an attack-all card.
+     *
+     * @param user    Being that would play the card
+     * @param card    Card to play
+     * @param targets Beings the card would hit
+     * @return Forecast for each target, in the same order.
+     */
+    public static List<DamageForecast> of(Being user, Card card, List<? extends Being> targets) {
+        List<DamageForecast> forecasts = new ArrayList<>(targets.size());
+        for (Being target : targets) {
+            forecasts.add(of(user, card, target));
+        }
+        return forecasts;
+    }
+
+    /**
+     * @return Being the card would hit.
+     */
+    public Being getTarget() {
+        return target;
+    }
+
+    /**
+     * @return Number of hits; 0 if the card deals no damage.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Damage per hit before the target's defense, with the user's strength included.
+     */
+    public int getHitDamage() {
+        return hitDamage;
+    }
+
+    /**
+     * @return Damage per hit stopped by the target's defense.
+     */
+    public int getDefenseMitigated() {
+        return defenseMitigated;
+    }
+
+    /**
+     * @return Damage in total stopped by the target's shield, which the shield loses.
+     */
+    public int getShieldAbsorbed() {
+        return shieldAbsorbed;
+    }
+
+    /**
+     * @return True iff the target has a shield and it is used up.
+     */
+    public boolean isShieldBroken() {
+        return shieldBroken;
+    }
+
+    /**
+     * @return Damage that gets through to the target's health, including overkill.
+     */
+    public int getDamage() {
+        return damage;
+    }
+
+    /**
+     * @return Damage beyond what it takes to kill the target; 0 if the target survives or dies exactly.
+     */
+    public int getOverkill() {
+        return overkill;
+    }
+
+    /**
+     * @return True iff the target would die.
+     */
+    public boolean isLethal() {
+        return lethal;
+    }
+
+    /**
+     * @return e.g. "Knight (1) takes 12 damage (defense stops 2x2, shield absorbs 5 and breaks). Lethal, 3 overkill."
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(target.getName()).append(" takes ").append(damage).append(" damage");
+        String separator = " (";
+        if (defenseMitigated > 0) {
+            text.append(separator).append("defense stops ").append(defenseMitigated);
+            if (hits > 1) {
+                text.append('x').append(hits);
+            }
+            separator = ", ";
+        }
+        if (shieldAbsorbed > 0) {
+            text.append(separator).append("shield absorbs ").append(shieldAbsorbed);
+            if (shieldBroken) {
+                text.append(" and breaks");
+            }
+            separator = ", ";
+        }
+        if (!separator.equals(" (")) {
+            text.append(')');
+        }
+        text.append('.');
+        if (isLethal()) {
+            text.append(" Lethal");
+            if (overkill > 0) {
+                text.append(", ").append(overkill).append(" overkill");
+            }
+            text.append('.');
+        }
+        return text.toString();
+    }
+}
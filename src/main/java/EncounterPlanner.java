@@ -0,0 +1,196 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Picks which enemies to field for a battle of a given cost (stamina), without creating any enemy that is not fielded.
+ * <p>
+ * Enemies are fielded by repeatedly picking a random enemy type that still fits in the stamina left, until none fits
+ * or the battlefield is full. Which compositions that can produce, and how likely each one is, only changes when the
+ * stamina crosses the total cost of some composition. So the planner sorts the total costs of every composition
+ * once, and for each range of stamina between two of them, lazily enumerates every composition the process can
+ * produce, in order, with its exact probability. Fielding enemies is then a binary search for the range and a single
+ * draw from an AliasTable.
+ * <p>
+ * Thread-safe.
+ */
+public final class EncounterPlanner {
+    private final EnemyTemplate[] templates; // every enemy type, in load order
+    private final int battlefieldSize; // the maximum number of enemies fielded at once
+    private final double[] thresholds; // sorted distinct total costs of every composition
+    private final AtomicReferenceArray<Bucket> buckets; // bucket i covers stamina in [thresholds[i], thresholds[i + 1])
+    private final List<EnemyTemplate> cheapest; // fielded alone when the stamina does not cover any enemy
+
+    /**
+     * Constructor.
+     *
+     * @param templates       Every enemy type that can be fielded. Must not be empty.
+     * @param battlefieldSize The maximum number of enemies fielded at once.
+     */
+    public EncounterPlanner(Collection<EnemyTemplate> templates, int battlefieldSize) {
+        if (templates.isEmpty() || battlefieldSize < 1) {
+            throw new IllegalArgumentException("need at least one enemy type and battlefield slot");
+        }
+        this.templates = templates.toArray(new EnemyTemplate[0]);
+        this.battlefieldSize = battlefieldSize;
+
+        List<Double> totals = new ArrayList<>();
+        collectTotals(0, 0, totals);
+        double[] sorted = new double[totals.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = totals.get(i);
+        }
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        thresholds = Arrays.copyOf(sorted, distinct);
+        buckets = new AtomicReferenceArray<>(distinct);
+
+        cheapest = new ArrayList<>();
+        for (EnemyTemplate template : this.templates) {
+            if (cheapest.isEmpty() || template.cost < cheapest.get(0).cost) {
+                cheapest.clear();
+            }
+            if (cheapest.isEmpty() || template.cost == cheapest.get(0).cost) {
+                cheapest.add(template);
+            }
+        }
+    }
+
+    /**
+     * Adds the total cost of every non-empty composition extending one of the given size and cost.
+     */
+    private void collectTotals(int size, double cost, List<Double> totals) {
+        if (size == battlefieldSize) {
+            return;
+        }
+        for (EnemyTemplate template : templates) {
+            double total = template.cost + cost; // same order of addition as fielding, so rounding agrees
+            totals.add(total);
+            collectTotals(size + 1, total, totals);
+        }
+    }
+
+    /**
+     * Fields random enemies whose combined cost fits within the given stamina. At least one enemy is always fielded:
+     * if no enemy fits, one of the cheapest is.
+     *
+     * @param stamina Battle cost.
+     * @param random  Random stream to pick the enemies with.
+     * @return List of new Enemies to place on the battlefield.
+     */
+    public List<Enemy> generate(double stamina, SplittableRandom random) {
+        return generate(stamina, random, null);
+    }
+
+    /**
+     * Like generate(stamina, random), but takes the enemies from the given pool when it has some of the right type.
+     *
+     * @param stamina Battle cost.
+     * @param random  Random stream to pick the enemies with.
+     * @param pool    Pool of enemies to reuse, or null to create new ones.
+     * @return List of fully-healed Enemies to place on the battlefield.
+     */
+    public List<Enemy> generate(double stamina, SplittableRandom random, EnemyPool pool) {
+        List<Enemy> enemies = new ArrayList<>(battlefieldSize);
+        int index = bucketIndex(stamina);
+        if (index < 0) {
+            enemies.add(spawn(cheapest.get(random.nextInt(cheapest.size())), pool));
+            return enemies;
+        }
+        for (EnemyTemplate template : getBucket(index).sample(random)) {
+            enemies.add(spawn(template, pool));
+        }
+        return enemies;
+    }
+
+    private static Enemy spawn(EnemyTemplate template, EnemyPool pool) {
+        return (pool == null) ? template.create() : pool.acquire(template);
+    }
+
+    /**
+     * @param stamina Battle cost.
+     * @return The number of distinct ordered compositions that can be fielded for the stamina.
+     */
+    public int getCompositionCount(double stamina) {
+        int index = bucketIndex(stamina);
+        return (index < 0) ? cheapest.size() : getBucket(index).compositions.length;
+    }
+
+    /**
+     * @return Index of the bucket covering the stamina, or -1 if it is below every composition's cost.
+     */
+    private int bucketIndex(double stamina) {
+        int index = Arrays.binarySearch(thresholds, stamina);
+        return (index >= 0) ? index : -index - 2;
+    }
+
+    private Bucket getBucket(int index) {
+        Bucket bucket = buckets.get(index);
+        if (bucket == null) {
+            // Racing threads build identical buckets, so whichever lands first is fine.
+            buckets.compareAndSet(index, null, new Bucket(thresholds[index]));
+            bucket = buckets.get(index);
+        }
+        return bucket;
+    }
+
+    /**
+     * Every composition that can be fielded within a range of stamina, with the chance of fielding each.
+     */
+    private final class Bucket {
+        private final EnemyTemplate[][] compositions;
+        private final AliasTable table;
+
+        Bucket(double stamina) {
+            List<EnemyTemplate[]> found = new ArrayList<>();
+            List<Double> chances = new ArrayList<>();
+            enumerate(stamina, new ArrayList<>(), 0, 1.0, found, chances);
+            compositions = found.toArray(new EnemyTemplate[0][]);
+            double[] weights = new double[chances.size()];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = chances.get(i);
+            }
+            table = new AliasTable(weights);
+        }
+
+        /**
+         * Adds every composition that can follow the given partial one. Each next enemy is uniform among the types
+         * that still fit.
+         */
+        private void enumerate(double stamina, List<EnemyTemplate> fielded, double cost, double chance,
+                               List<EnemyTemplate[]> found, List<Double> chances) {
+            int fitting = 0;
+            if (fielded.size() < battlefieldSize) {
+                for (EnemyTemplate template : templates) {
+                    if (template.cost + cost <= stamina) {
+                        fitting++;
+                    }
+                }
+            }
+            if (fitting == 0) {
+                found.add(fielded.toArray(new EnemyTemplate[0]));
+                chances.add(chance);
+                return;
+            }
+            for (EnemyTemplate template : templates) {
+                if (template.cost + cost <= stamina) {
+                    fielded.add(template);
+                    enumerate(stamina, fielded, template.cost + cost, chance / fitting, found, chances);
+                    fielded.remove(fielded.size() - 1);
+                }
+            }
+        }
+
+        EnemyTemplate[] sample(SplittableRandom random) {
+            return compositions[table.sample(random)];
+        }
+    }
+}
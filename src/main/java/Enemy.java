@@ -3,9 +3,11 @@ import java.util.*;
 public class Enemy extends Being {
 
     private double cost; // the cost to place this enemy on the battlefield
-    private int gold; // the maximum gold this enemy drops on defeat
-    private List<Card> cardDrops; // the cards this enemy drops on defeat
+    private LootTable loot; // what this enemy drops on defeat, shared by all enemies of the same type
+    private EnemyMoveTable moveTable; // every move the enemy can plan, shared by all enemies of the same type
     private List<Card> intent; // the cards the enemy intends to play
+    private final String typeName; // the name of the enemy's type, without its number on the battlefield
+    private final EnemyTemplate template; // the template the enemy was created from, null if created directly
 
     /**
      * Constructor.
@@ -16,33 +18,123 @@ public class Enemy extends Being {
      * @param deck            The deck the enemy has.
      */
     public Enemy(String name, int maxHealth, int maxActionPoints, List<Card> deck, double cost, int gold, List<Card> cardDrops) {
+        this(name, maxHealth, maxActionPoints, CardFactory.toIds(deck), cost, gold, CardFactory.toIds(cardDrops));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name            The name of the enemy.
+     * @param maxHealth       The max health of the enemy.
+     * @param maxActionPoints The max action points of the enemy.
+     * @param deck            The ids of the cards in the deck the enemy has.
+     * @param cost            The cost to place this enemy on the battlefield.
+     * @param gold            The maximum gold this enemy drops on defeat.
+     * @param cardDrops       The ids of the cards this enemy drops on defeat.
+     */
+    public Enemy(String name, int maxHealth, int maxActionPoints, int[] deck, double cost, int gold, int[] cardDrops) {
+        this(name, maxHealth, maxActionPoints, deck, cost, gold, cardDrops,
+                new EnemyMoveTable(deck, deck.length, maxActionPoints));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name            The name of the enemy.
+     * @param maxHealth       The max health of the enemy.
+     * @param maxActionPoints The max action points of the enemy.
+     * @param deck            The ids of the cards in the deck the enemy has.
+     * @param cost            The cost to place this enemy on the battlefield.
+     * @param gold            The maximum gold this enemy drops on defeat.
+     * @param cardDrops       The ids of the cards this enemy drops on defeat.
+     * @param moveTable       The moves this enemy can plan, built from the same deck and max action points.
+     */
+    public Enemy(String name, int maxHealth, int maxActionPoints, int[] deck, double cost, int gold, int[] cardDrops,
+                 EnemyMoveTable moveTable) {
         super(name, maxHealth, maxActionPoints, deck);
+        this.typeName = name;
+        this.template = null;
+        this.moveTable = moveTable;
         this.cost = cost;
-        this.gold = gold;
 
-        // make sure each card is not null
-        for (Card card : cardDrops) {
-            assert card != null;
+        // make sure each card exists
+        for (int id : cardDrops) {
+            assert CardFactory.getCard(id) != null;
         }
-        this.cardDrops = cardDrops;
+        this.loot = LootTable.uniform(cardDrops, gold);
 
         assert gold > 0;
 
-        assert !deck.isEmpty();
+        assert deck.length > 0;
         // make sure each card is a valid enemy card
-        for (Card card : deck) {
-            assert card.isPlayableBy(this);
+        for (int id : deck) {
+            assert CardFactory.getCard(id).isPlayableBy(this);
         }
-        this.deck = deck;
     }
 
     /**
-     * Appends a String to the enemy's name.
+     * Creates a fully-healed enemy of the template's type. The enemy shares the template's deck, loot table and move
+     * table instead of copying them. Use EnemyTemplate.create.
+     *
+     * @param template  The resolved template.
+     * @param deck      The template's deck ids. Never changed.
+     * @param loot      The template's loot table.
+     * @param moveTable The template's move table.
+     */
+    Enemy(EnemyTemplate template, int[] deck, LootTable loot, EnemyMoveTable moveTable) {
+        super(template.name, template.maxHealth, template.maxActionPoints, deck, deck.length);
+        this.typeName = template.name;
+        this.template = template;
+        this.moveTable = moveTable;
+        this.cost = template.cost;
+        this.loot = loot;
+    }
+
+    /**
+     * Copy constructor. See Being's copy constructor.
      *
-     * @param nameAddition the string to append.
+     * @param other The enemy to copy.
      */
-    public void addToName(String nameAddition) {
-        name += nameAddition;
+    public Enemy(Enemy other) {
+        super(other);
+        typeName = other.typeName;
+        template = other.template;
+        cost = other.cost;
+        loot = other.loot;
+        moveTable = other.moveTable;
+        intent = other.intent;
+    }
+
+    /**
+     * Numbers the enemy, to tell apart enemies of the same type on the battlefield: its name becomes its type's name
+     * followed by " (number)". Can be called again, e.g. when the enemy is reused.
+     *
+     * @param number The enemy's number on the battlefield, from 1.
+     */
+    public void setNumber(int number) {
+        name = typeName + " (" + number + ")";
+    }
+
+    /**
+     * @return The template the enemy was created from, or null if it was constructed directly.
+     */
+    EnemyTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Restores the enemy to how its template created it, so it can fight another battle: full health and action
+     * points, no defense, shield, strength, planned move or number, and nobody listening. Used by EnemyPool.
+     */
+    void reset() {
+        name = typeName;
+        health = maxHealth;
+        actionPoints = maxActionPoints;
+        defense = 0;
+        shield = 0;
+        strength = 0;
+        intent = null;
+        listener = BattleEventListener.NONE;
     }
 
     /**
@@ -53,39 +145,49 @@ public class Enemy extends Being {
     }
 
     /**
-     * @return A random amount of gold equal to or less than the gold, but larger than half the gold.
+     * @return A random amount of gold equal to or less than the gold, and at least half the gold.
      */
     public int getDroppedGold() {
-        Random r = new Random();
-        return r.nextInt(gold / 2) + (gold / 2);
+        return loot.rollGold(random);
     }
 
     /**
-     * @return The card drops for this enemy
+     * @return Every card this enemy can drop, in the order of its loot table.
      */
     public List<Card> getCardDrops() {
-        return cardDrops;
+        Catalog catalog = getCatalog();
+        int[] ids = loot.getCardIds();
+        List<Card> cards = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            cards.add(catalog.getCard(id));
+        }
+        return cards;
     }
 
     /**
-     * Must be called before getMove is called. Calculates the moves for an enemy.
-     *
-     * @return the list of Cards for this Enemy to play. Returns an empty list if it cannot find any Card.
+     * @return The name of the enemy's type, e.g. "Knight", without its number on the battlefield.
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * @return What this enemy drops on defeat.
+     */
+    public LootTable getLootTable() {
+        return loot;
+    }
+
+    /**
+     * Must be called before getMove is called. Calculates the moves for an enemy, with a single draw from its
+     * move table.
      */
     public void calculateMove() {
-        intent = new ArrayList<>();
-        int totalAP = 0;
-        for (int i = 0; i < deck.size() + 5 && totalAP <= maxActionPoints; i++) {
-            Card card = deck.get((int) (Math.random() * deck.size()));
-            if (card.getCost() + totalAP <= maxActionPoints && !intent.contains(card)) {
-                totalAP += card.getCost();
-                intent.add(card);
-            }
-        }
+        intent = moveTable.sample(random);
     }
 
     /**
-     * @return the list of cards the enemy plans to use this turn.
+     * @return the unmodifiable list of cards the enemy plans to use this turn.
      */
     public List<Card> getMove() {
         return intent;
@@ -99,14 +201,47 @@ public class Enemy extends Being {
      */
     @Override
     public void playCard(Card card, Being target) {
-        assert actionDeck.contains(card);
         card.play(this, target);
         actionPoints -= card.getCost();
         assert actionPoints >= 0;
 
-        actionDeck.remove(card);
-        if (!card.isSingleUse()) {
-            discardPile.add(card);
+        // Enemies play their intent straight from their deck, so this only matters if they ever draw cards.
+        discardFromActionDeck(card);
+    }
+
+    @Override
+    protected int stateSize() {
+        return super.stateSize() + 1 + ((intent == null) ? 0 : intent.size());
+    }
+
+    @Override
+    protected int writeState(int[] data, int offset) {
+        offset = super.writeState(data, offset);
+        if (intent == null) {
+            data[offset++] = -1;
+            return offset;
+        }
+        data[offset++] = intent.size();
+        for (Card card : intent) {
+            data[offset++] = card.getId();
+        }
+        return offset;
+    }
+
+    @Override
+    protected int readState(int[] data, int offset) {
+        offset = super.readState(data, offset);
+        int intentSize = data[offset++];
+        if (intentSize < 0) {
+            intent = null;
+            return offset;
+        }
+        Catalog catalog = getCatalog();
+        List<Card> cards = new ArrayList<>(intentSize);
+        for (int i = 0; i < intentSize; i++) {
+            cards.add(catalog.getCard(data[offset++]));
         }
+        intent = Collections.unmodifiableList(cards);
+        return offset;
     }
 }
@@ -2,19 +2,38 @@ import java.util.*;
 
 /**
  * Creates Enemies
+ * <p>
+ * Looks enemy types up in the current Catalog, which is immutable, so lookups are safe from any thread and any game
+ * session.
  */
 public class EnemyFactory {
-    private static Map<String, EnemyTemplate> nameToEnemy = new HashMap<>();
 
+    /**
+     * @param enemy The enemy template to be added. Its cards must already be in CardFactory.
+     */
     public static void addEnemyTemplate(EnemyTemplate enemy) {
-        nameToEnemy.put(enemy.name.toLowerCase(), enemy);
+        Catalog.publishEnemies(Collections.singletonList(enemy));
+    }
+
+    /**
+     * @param enemies The enemy templates to be added. Their cards must already be in CardFactory.
+     */
+    public static void addEnemyTemplates(List<EnemyTemplate> enemies) {
+        Catalog.publishEnemies(enemies);
+    }
+
+    /**
+     * @return Planner fielding every enemy type added so far on a battlefield of GameModel.BATTLEFIELD_SIZE.
+     */
+    public static EncounterPlanner getEncounterPlanner() {
+        return Catalog.getCurrent().getEncounterPlanner();
     }
 
     /**
      * @return Set of all Enemies
      */
     public static Set<EnemyTemplate> getAllEnemies() {
-        return new HashSet<>(nameToEnemy.values());
+        return new LinkedHashSet<>(Catalog.getCurrent().getAllEnemies());
     }
 
     /**
@@ -24,7 +43,7 @@ public class EnemyFactory {
      * @return New enemy of the given type, null if enemy not found
      */
     public static Enemy getEnemy(String name) {
-        EnemyTemplate template = nameToEnemy.get(name.toLowerCase());
+        EnemyTemplate template = Catalog.getCurrent().getEnemyTemplate(name);
         return (template == null) ? null : template.create();
     }
 }
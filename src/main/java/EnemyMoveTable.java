@@ -0,0 +1,124 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+
+/**
+ * Every move an enemy with a given deck and action points can plan, with the chance of planning each one.
+ * <p>
+ * An enemy plans its move by repeatedly picking a random card from its deck, keeping it if it still fits in its
+ * action points and has not been picked yet, until no card in the deck fits. The table enumerates every ordered
+ * sequence of cards this can produce, with its exact probability, once per enemy type. Planning a move is then a
+ * single draw from an AliasTable.
+ * <p>
+ * Enemy decks are a handful of cards, so there are only a few dozen moves at most.
+ */
+public final class EnemyMoveTable {
+    private final List<List<Card>> moves; // every possible move, each an unmodifiable list of cards in play order
+    private final double[] probabilities; // chance of each move
+    private final AliasTable table; // draws an index into moves
+
+    /**
+     * Constructor. All of the deck's cards must already be in CardFactory.
+     *
+     * @param deck            Ids of the cards in the deck. Duplicates make a card more likely to be picked.
+     * @param deckSize        Number of ids in deck to use.
+     * @param maxActionPoints Action points the enemy has each turn.
+     */
+    public EnemyMoveTable(int[] deck, int deckSize, int maxActionPoints) {
+        this(deck, deckSize, maxActionPoints, CardFactory::getCard);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param deck            Ids of the cards in the deck. Duplicates make a card more likely to be picked.
+     * @param deckSize        Number of ids in deck to use.
+     * @param maxActionPoints Action points the enemy has each turn.
+     * @param lookup          Looks up the card with a given id.
+     */
+    public EnemyMoveTable(int[] deck, int deckSize, int maxActionPoints, IntFunction<Card> lookup) {
+        // Collapse the deck into distinct cards and how many copies of each it holds.
+        int[] ids = Arrays.copyOf(deck, deckSize);
+        Arrays.sort(ids);
+        List<Card> cards = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0 && ids[i] == ids[i - 1]) {
+                counts.set(counts.size() - 1, counts.get(counts.size() - 1) + 1);
+            } else {
+                cards.add(lookup.apply(ids[i]));
+                counts.add(1);
+            }
+        }
+
+        moves = new ArrayList<>();
+        List<Double> chances = new ArrayList<>();
+        enumerate(cards, counts, new boolean[cards.size()], new ArrayList<>(), maxActionPoints, 1.0, chances);
+
+        probabilities = new double[chances.size()];
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = chances.get(i);
+        }
+        table = new AliasTable(probabilities);
+    }
+
+    /**
+     * Adds every move that can follow the given partial move, given the action points left.
+     * A pick is only ever kept if it fits and is new, so the next card kept is one of those, chosen in proportion
+     * to its copies in the deck.
+     */
+    private void enumerate(List<Card> cards, List<Integer> counts, boolean[] picked, List<Card> move,
+                           int actionPointsLeft, double chance, List<Double> chances) {
+        int eligibleCopies = 0;
+        for (int i = 0; i < cards.size(); i++) {
+            if (!picked[i] && cards.get(i).getCost() <= actionPointsLeft) {
+                eligibleCopies += counts.get(i);
+            }
+        }
+        if (eligibleCopies == 0) {
+            moves.add(Collections.unmodifiableList(new ArrayList<>(move)));
+            chances.add(chance);
+            return;
+        }
+        for (int i = 0; i < cards.size(); i++) {
+            Card card = cards.get(i);
+            if (picked[i] || card.getCost() > actionPointsLeft) {
+                continue;
+            }
+            picked[i] = true;
+            move.add(card);
+            enumerate(cards, counts, picked, move, actionPointsLeft - card.getCost(),
+                    chance * counts.get(i) / eligibleCopies, chances);
+            move.remove(move.size() - 1);
+            picked[i] = false;
+        }
+    }
+
+    /**
+     * Draws a move.
+     *
+     * @param random Random stream to draw from.
+     * @return Unmodifiable list of the cards to play, in order. Empty if no card in the deck is affordable.
+     */
+    public List<Card> sample(SplittableRandom random) {
+        return moves.get(table.sample(random));
+    }
+
+    /**
+     * @return Every possible move, each an unmodifiable list of cards in play order.
+     */
+    public List<List<Card>> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * @param index Index of a move in getMoves.
+     * @return The chance of drawing that move.
+     */
+    public double getProbability(int index) {
+        return probabilities[index];
+    }
+}
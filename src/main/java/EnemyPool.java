@@ -0,0 +1,74 @@
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Keeps enemies that have finished a battle so that later battles reuse them instead of creating new ones. A reused
+ * enemy is reset to exactly how its template creates it, and battles deal its deck anew, so a battle plays out the
+ * same whether its enemies are new or reused.
+ * <p>
+ * Enemies are kept per EnemyTemplate. Enemies of templates from an older Catalog are never handed out for a newer
+ * catalog's templates, so a pool follows catalog reloads; call clear to drop the old ones.
+ * <p>
+ * Not thread-safe: use one pool per thread, e.g. per simulation worker.
+ */
+public final class EnemyPool {
+    private final Map<EnemyTemplate, ArrayDeque<Enemy>> free = new IdentityHashMap<>(); // released enemies per type
+    private int size; // the number of enemies kept
+
+    /**
+     * @param template Resolved template of the enemy wanted.
+     * @return A fully-healed enemy of the template's type: a released one if there is one, else a new one.
+     */
+    public Enemy acquire(EnemyTemplate template) {
+        ArrayDeque<Enemy> enemies = free.get(template);
+        if (enemies == null || enemies.isEmpty()) {
+            return template.create();
+        }
+        size--;
+        return enemies.pop();
+    }
+
+    /**
+     * Takes back an enemy whose battle is over. The caller must not use it, or release it again, afterwards.
+     * Enemies that were not created by a template are ignored.
+     *
+     * @param enemy Enemy to reuse.
+     */
+    public void release(Enemy enemy) {
+        EnemyTemplate template = enemy.getTemplate();
+        if (template == null) {
+            return;
+        }
+        enemy.reset();
+        free.computeIfAbsent(template, t -> new ArrayDeque<>()).push(enemy);
+        size++;
+    }
+
+    /**
+     * Takes back every enemy of a battle that is over. See release.
+     *
+     * @param enemies Enemies to reuse, e.g. BattleManager.getRoster.
+     */
+    public void releaseAll(Collection<Enemy> enemies) {
+        for (Enemy enemy : enemies) {
+            release(enemy);
+        }
+    }
+
+    /**
+     * @return The number of enemies waiting to be reused.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Drops every enemy waiting to be reused.
+     */
+    public void clear() {
+        free.clear();
+        size = 0;
+    }
+}
@@ -1,15 +1,24 @@
 import com.google.gson.annotations.SerializedName;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a "type" of Enemy. Can use .create() to construct an enemy from this template.
+ * <p>
+ * What the enemy drops is either a plain list of card names (cardDrops), which all drop equally often, or a weighted
+ * loot list (loot) whose entries give each card a weight or a rarity. Either way resolve compiles it into a
+ * LootTable.
  */
 public class EnemyTemplate {
     public final String name; // the name of the enemy
     public final List<String> deck; // names of the deck
-    public final List<String> cardDrops; // names of the cards it can drop
+    public final List<String> cardDrops; // names of the cards it can drop, all equally likely; unused if loot is set
+    public final List<LootEntry> loot; // the cards it can drop with their weights, null to use cardDrops
+    public final Double dropChance; // the chance that a roll drops a card, null for GameModel.DROP_CHANCE
+    public final Integer lootRolls; // the number of card rolls per kill, null for LootTable.defaultRolls
     public final double cost; // the cost to deploy this enemy on the battlefield
     public final int gold; // the maximum gold dropped on defeat
 
@@ -19,12 +28,64 @@ public class EnemyTemplate {
     @SerializedName(value = "actionPoints")
     public final int maxActionPoints;
 
+    private transient int[] deckIds; // ids of the deck, filled in by resolve
+    private transient LootTable lootTable; // what it drops, filled in by resolve
+    private transient EnemyMoveTable moveTable; // every move it can plan, filled in by resolve
+
+    /**
+     * A card an enemy type can drop, and how likely it is compared to the type's other drops.
+     */
+    public static class LootEntry {
+        public final String card; // name of the card
+        public final double weight; // relative weight, 0 to use the rarity's weight
+        public final LootTable.Rarity rarity; // null for common
+
+        /**
+         * Constructor.
+         */
+        public LootEntry(String card, double weight, LootTable.Rarity rarity) {
+            this.card = card;
+            this.weight = weight;
+            this.rarity = rarity;
+        }
+
+        /**
+         * @return The weight of the entry: its own, or else its rarity's.
+         */
+        public double getWeight() {
+            if (weight != 0) {
+                return weight;
+            }
+            return (rarity == null) ? LootTable.Rarity.COMMON.weight : rarity.weight;
+        }
+
+        public String toString() {
+            return card + " (" + getWeight() + ")";
+        }
+    }
+
+    /**
+     * Constructor, for an enemy whose drops are all equally likely.
+     */
+    public EnemyTemplate(String name, List<String> cardDrops, int maxHealth, int maxActionPoints, List<String> deck, double cost, int gold) {
+        this(name, cardDrops, null, null, null, maxHealth, maxActionPoints, deck, cost, gold);
+    }
+
     /**
      * Constructor.
+     *
+     * @param loot       Weighted drops, or null to drop cardDrops equally often.
+     * @param dropChance Chance that a roll drops a card, or null for GameModel.DROP_CHANCE.
+     * @param lootRolls  Card rolls per kill, or null for LootTable.defaultRolls.
      */
-    public EnemyTemplate(String name, List<String> cardDrops, int maxHealth, int maxActionPoints, List<String> deck, int cost, int gold) {
+    public EnemyTemplate(String name, List<String> cardDrops, List<LootEntry> loot, Double dropChance,
+                         Integer lootRolls, int maxHealth, int maxActionPoints, List<String> deck, double cost,
+                         int gold) {
         this.name = name;
         this.cardDrops = cardDrops;
+        this.loot = loot;
+        this.dropChance = dropChance;
+        this.lootRolls = lootRolls;
         this.maxHealth = maxHealth;
         this.maxActionPoints = maxActionPoints;
         this.deck = deck;
@@ -33,26 +94,116 @@ public class EnemyTemplate {
     }
 
     /**
-     * Uses this template to create a fully-healed Enemy with the properties of this EnemyTemplate.
+     * Copy constructor, for resolve.
+     */
+    private EnemyTemplate(EnemyTemplate other) {
+        name = other.name;
+        deck = other.deck;
+        cardDrops = other.cardDrops;
+        loot = other.loot;
+        dropChance = other.dropChance;
+        lootRolls = other.lootRolls;
+        cost = other.cost;
+        gold = other.gold;
+        maxHealth = other.maxHealth;
+        maxActionPoints = other.maxActionPoints;
+    }
+
+    /**
+     * Returns a copy of this template with the ids of its deck looked up, its drops compiled into a LootTable and the
+     * moves it can plan precomputed, so that creating an enemy needs no name lookups and planning a move or rolling
+     * a drop is a single draw. This template is unchanged, so it can be resolved against several catalogs.
      *
-     * @return a new Enemy using this template
+     * @param nameToCard Cards keyed by lower case name.
+     * @param idToCard   Cards indexed by id.
+     * @return The resolved copy, ready for create.
+     * @throws IllegalArgumentException if the template is incomplete, a card of the deck or drops is not in
+     *                                  nameToCard or cannot be played by whoever would hold it, or the loot
+     *                                  settings are out of range (see LootTable).
      */
-    public Enemy create() {
-        List<Card> cards = new ArrayList<>();
-        for (String cardName : deck) {
-            cards.add(CardFactory.getCard(cardName));
+    EnemyTemplate resolve(Map<String, Card> nameToCard, Card[] idToCard) {
+        if (name == null || deck == null || (cardDrops == null && loot == null) || deck.isEmpty()) {
+            throw new IllegalArgumentException("Enemy " + name + " needs a name, a deck and card drops");
+        }
+        if (maxHealth <= 0 || maxActionPoints <= 0 || cost <= 0 || gold <= 0) {
+            throw new IllegalArgumentException("Enemy " + name + " needs positive health, action points, cost and gold");
+        }
+        EnemyTemplate resolved = new EnemyTemplate(this);
+        resolved.deckIds = toIds(deck, nameToCard, false);
+        resolved.lootTable = resolveLoot(nameToCard);
+        resolved.moveTable = new EnemyMoveTable(resolved.deckIds, resolved.deckIds.length, maxActionPoints,
+                id -> idToCard[id]);
+        return resolved;
+    }
+
+    private LootTable resolveLoot(Map<String, Card> nameToCard) {
+        List<String> names = new ArrayList<>();
+        double[] weights;
+        if (loot != null) {
+            weights = new double[loot.size()];
+            for (int i = 0; i < weights.length; i++) {
+                LootEntry entry = loot.get(i);
+                if (entry.card == null || entry.weight < 0) {
+                    throw new IllegalArgumentException(name + " has a loot entry without a card or with a negative weight");
+                }
+                names.add(entry.card);
+                weights[i] = entry.getWeight();
+            }
+        } else {
+            names.addAll(cardDrops);
+            weights = new double[names.size()];
+            Arrays.fill(weights, LootTable.Rarity.COMMON.weight);
         }
-        List<Card> cardDrop = new ArrayList<>();
-        for (String cardName : cardDrops) {
-            cardDrop.add(CardFactory.getCard(cardName));
+        int[] ids = toIds(names, nameToCard, true);
+        try {
+            return new LootTable(ids, weights, (dropChance != null) ? dropChance : GameModel.DROP_CHANCE,
+                    (lootRolls != null) ? lootRolls : LootTable.defaultRolls(ids), gold);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(name + ": " + e.getMessage(), e);
         }
-        return new Enemy(name, maxHealth, maxActionPoints, cards, cost, gold, cardDrop);
+    }
+
+    /**
+     * @param playerCards True iff the cards must be player cards (drops), false iff enemy cards (deck).
+     */
+    private int[] toIds(List<String> names, Map<String, Card> nameToCard, boolean playerCards) {
+        int[] ids = new int[names.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Card card = nameToCard.get(names.get(i).toLowerCase());
+            if (card == null) {
+                throw new IllegalArgumentException(name + " refers to unknown card " + names.get(i));
+            }
+            if (card.isPlayerCard() != playerCards) {
+                throw new IllegalArgumentException(name + (playerCards ? " drops enemy card " : " has player card ")
+                        + card.getName() + (playerCards ? "" : " in its deck"));
+            }
+            ids[i] = card.getId();
+        }
+        return ids;
+    }
+
+    /**
+     * Uses this template to create a fully-healed Enemy with the properties of this EnemyTemplate. The enemy shares
+     * the template's resolved deck, drops and moves, so this allocates only the enemy itself. See also EnemyPool.
+     *
+     * @return a new Enemy using this template
+     */
+    public Enemy create() {
+        assert deckIds != null : "create must be called on a resolved template";
+        return new Enemy(this, deckIds, lootTable, moveTable);
+    }
+
+    /**
+     * @return What enemies of this type drop. Only set on resolved templates.
+     */
+    public LootTable getLootTable() {
+        return lootTable;
     }
 
     /**
      * @return String representation of this template, including name, health, action points, deck, cost, and drops
      */
     public String toString() {
-        return name + ": " + maxHealth + " HP, " + maxActionPoints + " AP. Deck: " + deck + ". Cost: " + cost + ", Gold " + gold + ", cardDrops " + cardDrops;
+        return name + ": " + maxHealth + " HP, " + maxActionPoints + " AP. Deck: " + deck + ". Cost: " + cost + ", Gold " + gold + ", cardDrops " + ((loot != null) ? loot : cardDrops);
     }
 }
\ No newline at end of file
@@ -0,0 +1,342 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Measures the engine's hot paths, as a baseline to judge performance changes against and to catch regressions.
+ * <p>
+ * Each benchmark repeats one operation on state set up beforehand: a few warmup iterations so the JIT compiles it,
+ * then timed iterations of a fixed length, reported as the average time per operation and its spread. With
+ * allocation profiling, each iteration also reads the bytes the thread allocated and the garbage collections run, so
+ * the cost of an operation shows up as bytes per operation. Profiling is cheap but not free, so by default every
+ * benchmark runs once without it, for the time, and once with it, e.g.
+ * <pre>
+ *   java EngineBenchmark
+ *   java EngineBenchmark --benchmark battle,attackAll --profile alloc --iterations 20
+ * </pre>
+ * Compare runs on the same machine and JVM only. Every benchmark plays with the same seeds, so runs are comparable.
+ */
+public class EngineBenchmark {
+    private static final long SEED = 42; // seed of every benchmark's randomness
+    private static final int ENEMIES = 64; // enemies hit by each attack-all card
+    private static final int BATTLE_SEEDS = 1024; // battles cycled through by the battle benchmark
+    private static final double STAMINA = 3; // battle cost of the battles started and played
+    private static final String[] BENCHMARKS = {"drawCards", "initializeDeck", "takeDamage", "damageCalculation",
+            "attackAll", "calculateMove", "startBattle", "battle", "saveRoundTrip", "catalogLoad"};
+
+    /**
+     * One operation to measure, with its state already set up.
+     */
+    private interface Benchmark {
+        /**
+         * Runs the operation once and returns something derived from it, so the work cannot be optimized away.
+         */
+        int run() throws IOException;
+    }
+
+    /**
+     * The result of measuring a benchmark.
+     */
+    private static class Result {
+        private final double[] nanosPerOp; // average time per operation in each iteration
+        private double bytesPerOp = Double.NaN; // average bytes allocated per operation, NaN if not profiled
+        private long collections; // garbage collections during the timed iterations, if profiled
+
+        private Result(int iterations) {
+            nanosPerOp = new double[iterations];
+        }
+
+        @Override
+        public String toString() {
+            double mean = 0;
+            for (double nanos : nanosPerOp) {
+                mean += nanos;
+            }
+            mean /= nanosPerOp.length;
+            double variance = 0;
+            for (double nanos : nanosPerOp) {
+                variance += (nanos - mean) * (nanos - mean);
+            }
+            double deviation = Math.sqrt(variance / Math.max(1, nanosPerOp.length - 1));
+            String text = String.format("%12.1f ns/op +- %5.1f%%", mean, 100 * deviation / mean);
+            if (!Double.isNaN(bytesPerOp)) {
+                text += String.format("  %12.1f B/op  %4d GCs", bytesPerOp, collections);
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Sets up a benchmark.
+     *
+     * @param name Name of the benchmark, one of BENCHMARKS.
+     * @return The benchmark, ready to run.
+     * @throws IllegalArgumentException if there is no benchmark of that name.
+     */
+    private static Benchmark create(String name) throws IOException {
+        Catalog catalog = Catalog.getCurrent();
+        switch (name) {
+            case "drawCards": {
+                // Draws a hand and discards it, as every turn does.
+                Player player = newPlayer(GameModel.getInitialDeck(), 3, 4);
+                player.initializeDeck(catalog);
+                return () -> {
+                    player.drawCards();
+                    int drawn = player.getActionDeck().size();
+                    while (!player.isActionDeckEmpty()) {
+                        player.discardFromActionDeck(player.getActionDeck().get(0));
+                    }
+                    return drawn;
+                };
+            }
+            case "initializeDeck": {
+                Player player = newPlayer(GameModel.getInitialDeck(), 3, 4);
+                return () -> {
+                    player.initializeDeck(catalog);
+                    return player.getActionPoints();
+                };
+            }
+            case "takeDamage": {
+                Enemy target = newEnemy(catalog, "Bear");
+                return () -> {
+                    target.setHealth(target.getMaxHealth());
+                    target.setDefense(1);
+                    target.increaseShield(4);
+                    target.takeDamage(6, 3);
+                    return target.getHealth();
+                };
+            }
+            case "damageCalculation": {
+                Player player = newPlayer(GameModel.getInitialDeck(), 3, 4);
+                player.increaseStrength(2);
+                Enemy target = newEnemy(catalog, "Armored Knight");
+                target.setDefense(2);
+                target.increaseShield(5);
+                Card card = catalog.getCard("Double Tap");
+                return () -> target.damageCalculation(player, card);
+            }
+            case "attackAll": {
+                // Plays an attack-all card on a crowded battlefield, then heals the enemies for the next play.
+                Card scythe = catalog.getCard("Scythe");
+                Player player = newPlayer(Collections.nCopies(10, scythe), scythe.getCost(), 10);
+                player.initializeDeck(catalog);
+                List<Enemy> enemies = new ArrayList<>(ENEMIES);
+                for (int i = 0; i < ENEMIES; i++) {
+                    enemies.add(newEnemy(catalog, "Knight"));
+                }
+                return () -> {
+                    player.drawCards();
+                    player.resetActionPoints();
+                    player.playCard(scythe, enemies);
+                    int health = 0;
+                    for (Enemy enemy : enemies) {
+                        health += enemy.getHealth();
+                        enemy.setHealth(enemy.getMaxHealth());
+                    }
+                    return health;
+                };
+            }
+            case "calculateMove": {
+                Enemy enemy = newEnemy(catalog, "Wizard");
+                return () -> {
+                    enemy.calculateMove();
+                    return enemy.getMove().size();
+                };
+            }
+            case "startBattle": {
+                // Picks and creates the enemies of a battle, and sets the battle up.
+                GameModel model = new GameModel(SEED, newPlayer(GameModel.getInitialDeck(), 3, 4));
+                return () -> {
+                    BattleManager battle = model.startBattle(STAMINA);
+                    battle.start();
+                    return battle.getEnemies().size();
+                };
+            }
+            case "battle": {
+                // Plays a whole battle with the greedy policy, as BattleSimulator does.
+                BattleSimulator simulator = new BattleSimulator(GameModel.getInitialDeck(), 50, 3, 4,
+                        (random, pool) -> GameModel.generateEnemies(STAMINA, random, pool), new GreedyPolicy());
+                long[] seeds = new SplittableRandom(SEED).longs(BATTLE_SEEDS).toArray();
+                int[] next = new int[1];
+                return () -> {
+                    BattleSimulator.Report report = simulator.simulateOne(seeds[next[0]++ % BATTLE_SEEDS]);
+                    return (int) report.getWins();
+                };
+            }
+            case "saveRoundTrip": {
+                // Saves a player in the binary format and loads them back, as saving and loading a profile does.
+                Player player = newPlayer(GameModel.getInitialDeck(), 3, 4);
+                return () -> {
+                    SaveState save = SaveCodec.decode(SaveCodec.encode(new SaveState(player, 1.4884)));
+                    return save.constructPlayer().getHealth();
+                };
+            }
+            case "catalogLoad": {
+                // Parses the catalog and builds it, without publishing it.
+                String cards = CodecBenchmark.readResource(CatalogWatcher.CARDS_FILE);
+                String enemies = CodecBenchmark.readResource(CatalogWatcher.ENEMIES_FILE);
+                return () -> catalog.replacedWith(CatalogCodec.readCards(new StringReader(cards)),
+                        CatalogCodec.readEnemies(new StringReader(enemies))).getCardCount();
+            }
+            default:
+                throw new IllegalArgumentException("Unknown benchmark " + name);
+        }
+    }
+
+    private static Player newPlayer(List<Card> deck, int maxActionPoints, int drawSize) {
+        Player player = new Player("Benchmark", 50, maxActionPoints, deck, drawSize);
+        player.setRandom(new SplittableRandom(SEED));
+        return player;
+    }
+
+    private static Enemy newEnemy(Catalog catalog, String name) {
+        Enemy enemy = catalog.getEnemyTemplate(name).create();
+        enemy.setRandom(new SplittableRandom(SEED));
+        enemy.initializeDeck(catalog);
+        return enemy;
+    }
+
+    /**
+     * Runs the benchmark for at least the given time, checking the clock only between batches of operations.
+     *
+     * @return The number of operations run, and their total time, in elapsed[0].
+     */
+    private static long runFor(Benchmark benchmark, long nanos, long batch, long[] elapsed, int[] sink)
+            throws IOException {
+        long operations = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            for (long i = 0; i < batch; i++) {
+                sink[0] += benchmark.run();
+            }
+            operations += batch;
+            now = System.nanoTime();
+        } while (now - start < nanos);
+        elapsed[0] = now - start;
+        return operations;
+    }
+
+    /**
+     * Warms up and measures a benchmark.
+     */
+    private static Result measure(Benchmark benchmark, int warmups, int iterations, long nanos, boolean profile,
+                                  int[] sink) throws IOException {
+        long[] elapsed = new long[1];
+        // Size the batches so the clock is read about a thousand times per iteration.
+        long batch = 1;
+        for (int i = 0; i < warmups; i++) {
+            long operations = runFor(benchmark, nanos, batch, elapsed, sink);
+            batch = Math.max(1, operations / 1000);
+        }
+
+        com.sun.management.ThreadMXBean threads = profile ? threadBean() : null;
+        long threadId = Thread.currentThread().getId();
+        long allocated = 0;
+        long totalOperations = 0;
+        long collectionsBefore = profile ? collections() : 0;
+        Result result = new Result(iterations);
+        for (int i = 0; i < iterations; i++) {
+            long bytesBefore = profile ? threads.getThreadAllocatedBytes(threadId) : 0;
+            long operations = runFor(benchmark, nanos, batch, elapsed, sink);
+            if (profile) {
+                allocated += threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+            }
+            totalOperations += operations;
+            result.nanosPerOp[i] = (double) elapsed[0] / operations;
+        }
+        if (profile) {
+            result.bytesPerOp = (double) allocated / totalOperations;
+            result.collections = collections() - collectionsBefore;
+        }
+        return result;
+    }
+
+    /**
+     * @return The JVM's thread bean, which can tell how much each thread has allocated.
+     * @throws IllegalStateException if the JVM cannot count allocated bytes.
+     */
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM cannot profile allocations");
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    /**
+     * @return The number of garbage collections so far, of every collector.
+     */
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> names = Arrays.asList(BENCHMARKS);
+        int warmups = 5;
+        int iterations = 10;
+        long time = 200; // milliseconds per iteration
+        String profile = "both";
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--benchmark":
+                    names = Arrays.asList(value.split("\\s*,\\s*"));
+                    break;
+                case "--warmup":
+                    warmups = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                case "--time":
+                    time = Long.parseLong(value);
+                    break;
+                case "--profile":
+                    profile = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        boolean[] modes;
+        if (profile.equalsIgnoreCase("both")) {
+            modes = new boolean[]{false, true};
+        } else if (profile.equalsIgnoreCase("none")) {
+            modes = new boolean[]{false};
+        } else if (profile.equalsIgnoreCase("alloc")) {
+            modes = new boolean[]{true};
+        } else {
+            throw new IllegalArgumentException("Unknown profile " + profile);
+        }
+        if (iterations < 1 || time < 1) {
+            throw new IllegalArgumentException("Need at least one iteration of at least 1 ms");
+        }
+
+        new GameModel(); // loads the cards and enemies
+
+        int[] sink = new int[1];
+        for (String name : names) {
+            for (boolean mode : modes) {
+                Result result = measure(create(name), warmups, iterations, time * 1_000_000, mode, sink);
+                System.out.printf("%-18s %-6s %s%n", name, mode ? "alloc" : "", result);
+            }
+        }
+        System.out.println("(check " + sink[0] + ")");
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Keeps each player's profile in a file of its own, named after the player: prefix-hash.sav, where prefix is part of
+ * the name and hash is the SHA-1 of the full name. Reads legacy prefix-hash.json saves if there is no binary one.
+ * <p>
+ * A ProfileIndex in the same directory records which players have a save and the name of its file, so loading and
+ * saving a known player never hashes the name, and a player without a save is turned away without touching the disk.
+ * Only a new player's first save, and building the index, hash names. The index is built from the save files the
+ * first time the directory is opened; after that only saves made through this class are noticed.
+ */
+public class FileProfileStore implements ProfileStore {
+    private static final String SAVE_EXTENSION = ".sav"; // binary saves, see SaveCodec
+    private static final String LEGACY_SAVE_EXTENSION = ".json"; // saves from before the binary format
+    public static final String INDEX_FILE_NAME = "profiles.idx";
+
+    private static final long NO_LOCATION = -1; // each save is a whole file, so the index only needs its name
+
+    private static final ThreadLocal<MessageDigest> SHA_1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    });
+
+    private final Path directory;
+    private final ProfileIndex index;
+
+    /**
+     * Constructor. Opens the directory's ProfileIndex, building it from the save files if there is none.
+     *
+     * @param directory Directory holding the save files.
+     * @throws IOException if the index cannot be opened or built.
+     */
+    public FileProfileStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        index = new ProfileIndex(directory.resolve(INDEX_FILE_NAME));
+        if (index.isNew()) {
+            rebuildIndex();
+        }
+    }
+
+    @Override
+    public SaveState load(String name) throws IOException {
+        ProfileIndex.Summary summary = index.get(name);
+        if (summary == null) {
+            return null;
+        }
+        Path file = directory.resolve(summary.getFile());
+        if (summary.getFile().endsWith(LEGACY_SAVE_EXTENSION)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                return SaveCodec.readJson(reader);
+            }
+        }
+        return SaveCodec.read(file);
+    }
+
+    @Override
+    public void store(SaveState save) throws IOException {
+        ProfileIndex.Summary summary = index.get(save.name);
+        String file;
+        if (summary == null) {
+            file = getSaveFileName(save.name, SAVE_EXTENSION);
+        } else if (summary.getFile().endsWith(SAVE_EXTENSION)) {
+            file = summary.getFile();
+        } else { // a legacy save, replaced by a binary one next to it
+            file = summary.getFile().substring(0, summary.getFile().length() - LEGACY_SAVE_EXTENSION.length())
+                    + SAVE_EXTENSION;
+        }
+        SaveCodec.write(save, directory.resolve(file));
+        index.put(save, file, NO_LOCATION, System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return index.contains(name);
+    }
+
+    @Override
+    public List<ProfileIndex.Summary> listProfiles() {
+        return index.list();
+    }
+
+    /**
+     * Adds every save file in the directory to the index. Binary saves win over legacy ones of the same player.
+     *
+     * @throws IOException if the directory cannot be listed.
+     */
+    private void rebuildIndex() throws IOException {
+        indexFiles(LEGACY_SAVE_EXTENSION);
+        indexFiles(SAVE_EXTENSION);
+        index.force();
+    }
+
+    private void indexFiles(String extension) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + extension)) {
+            for (Path file : files) {
+                SaveState save;
+                try {
+                    if (extension.equals(LEGACY_SAVE_EXTENSION)) {
+                        try (Reader reader = Files.newBufferedReader(file)) {
+                            save = SaveCodec.readJson(reader);
+                        }
+                    } else {
+                        save = SaveCodec.read(file);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Skipping unreadable save file " + file);
+                    continue;
+                }
+                String fileName = file.getFileName().toString();
+                if (save == null || save.name == null || !fileName.equals(getSaveFileName(save.name, extension))) {
+                    continue; // not a save, or not the file store would write it to
+                }
+                index.put(save, fileName, NO_LOCATION, Files.getLastModifiedTime(file).toMillis());
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the save file of a player with the given name. There may be no such file. Only needed for
+     * players the index does not know yet.
+     *
+     * @param name      Player name to get save file name of
+     * @param extension Extension of the save file
+     * @return name of the file a save of the player would be in
+     */
+    private static String getSaveFileName(String name, String extension) {
+        // Calculate SHA-1 hash of name
+        String hash = new BigInteger(1, SHA_1.get().digest(name.getBytes())).toString(16);
+
+        // Get the first 5 characters of the alphanumeric part of name
+        String prefix = name.replaceAll("[^a-zA-Z0-9]", "");
+        prefix = (prefix.length() > 5) ? prefix.substring(0, 5) : prefix;
+
+        return prefix + "-" + hash + extension;
+    }
+}
@@ -1,14 +1,8 @@
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-
 import java.io.*;
-import java.math.BigInteger;
-import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 /**
@@ -19,24 +13,53 @@ public class GameModel {
 
     private static final double STARTING_DIFFICULTY = 1.22;
     private double difficulty; // The difficulty
+    private final SplittableRandom random; // The source of all randomness in this game session
+    private final Shop shop = new Shop(); // The shop of this game session
+    private final Hospital hospital = new Hospital(); // The hospital of this game session
 
     public static final int BATTLEFIELD_SIZE = 3; // the maximum number of enemies on the battlefield
-    public static final double DROP_CHANCE = 0.4; // the chance that the enemy will drop a card for the player to find.
+    public static final double DROP_CHANCE = 0.6; // the chance that a roll of an enemy's loot table drops a card, unless enemies.json says otherwise.
 
     private static final String CARDS_DATA_FILE = "cards.json";
     private static final String ENEMIES_DATA_FILE = "enemies.json";
+    private static final String SAVE_DIRECTORY = "saves";
+    public static final String REPLAY_DIRECTORY_PROPERTY = "knightdeck.replayDir"; // system property naming the directory battles are recorded into
+
+    private static final String[] INITIAL_DECK = {"Stab", "Shield", "Stab", "Shield", "Stab", "Shield", "Smash",
+            "Defensive Stance", "Block", "Double Tap", "Sickle", "Scythe"}; // the cards a new player starts with
+    private static final String[] FINAL_BATTLE_ENEMIES = {"Beast", "Knight", "Wizard"};
 
     /**
-     * Constructor
+     * Constructor. Uses a randomly chosen seed.
      */
     public GameModel() {
-        loadCards();
-        loadEnemies();
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructor. Every battle, enemy encounter and shop refresh in this session is derived from the given seed.
+     *
+     * @param seed Seed for all of the randomness in this game session
+     */
+    public GameModel(long seed) {
+        random = new SplittableRandom(seed);
+        loadCatalog();
 
         assert !CardFactory.getAllCards().isEmpty();
         assert !EnemyFactory.getAllEnemies().isEmpty();
+    }
 
-        Shop.setVisitable();
+    /**
+     * Constructor for a session of the given player that loads and saves nothing, e.g. for benchmarks.
+     *
+     * @param seed   Seed for all of the randomness in this game session
+     * @param player The player
+     */
+    GameModel(long seed, Player player) {
+        this(seed);
+        this.player = player;
+        difficulty = STARTING_DIFFICULTY;
+        hospital.setPlayer(player);
     }
 
     /**
@@ -55,21 +78,32 @@ public class GameModel {
             difficulty = STARTING_DIFFICULTY;
             saveData();
         }
+        hospital.setPlayer(player);
     }
 
     /**
-     * Saves player save state to disk.
+     * Saves player save state to disk in the background. See SaveWriter.
      */
     public void saveData() {
         player.sortDeck();
         makeSaveState(player, difficulty);
     }
 
+    /**
+     * Exports the player's save state as JSON.
+     *
+     * @param writer Writer to export to. Not closed.
+     * @throws IOException if the writer fails.
+     */
+    public void exportSave(Writer writer) throws IOException {
+        SaveCodec.writeJson(new SaveState(player, difficulty), writer);
+    }
+
     /**
      * Refreshes the shop's contents.
      */
     public void refreshShopContents() {
-        Shop.refreshContents();
+        shop.refreshContents(random);
     }
 
     /**
@@ -86,24 +120,32 @@ public class GameModel {
      * @return BattleManager representing the battle.
      */
     public BattleManager startBattle(double battleFieldStamina) {
-        // Adding the enemies to battle
-        List<Enemy> enemies = new ArrayList<>();
-        double costOfThisField = 0;
-        List<EnemyTemplate> enemyList = new ArrayList<>(EnemyFactory.getAllEnemies());
-
-        for (int i = 0; i < 10 || enemies.isEmpty(); i++) {
-            Enemy enemy = enemyList.get((int) (Math.random() * enemyList.size())).create();
-            if (enemy.getCost() + costOfThisField <= battleFieldStamina) {
-                enemies.add(enemy);
-                costOfThisField += enemy.getCost();
-                i = 0;
-            }
-            if (enemies.size() >= BATTLEFIELD_SIZE) {
-                break;
-            }
-        }
+        List<Enemy> enemies = generateEnemies(battleFieldStamina, random);
+        return record(new BattleManager(player, enemies, random.nextLong()));
+    }
+
+    /**
+     * Picks random enemies whose combined cost fits within the given battle cost. At least one enemy is always picked.
+     * Only the enemies picked are created; see EncounterPlanner.
+     *
+     * @param battleFieldStamina Battle cost
+     * @param random             Random stream to pick the enemies with
+     * @return List of new Enemies to place on the battlefield.
+     */
+    public static List<Enemy> generateEnemies(double battleFieldStamina, SplittableRandom random) {
+        return EnemyFactory.getEncounterPlanner().generate(battleFieldStamina, random);
+    }
 
-        return new BattleManager(player, enemies);
+    /**
+     * Like generateEnemies(battleFieldStamina, random), but reuses enemies from the given pool when it can.
+     *
+     * @param battleFieldStamina Battle cost
+     * @param random             Random stream to pick the enemies with
+     * @param pool               Pool of enemies to reuse
+     * @return List of fully-healed Enemies to place on the battlefield.
+     */
+    public static List<Enemy> generateEnemies(double battleFieldStamina, SplittableRandom random, EnemyPool pool) {
+        return EnemyFactory.getEncounterPlanner().generate(battleFieldStamina, random, pool);
     }
 
     /**
@@ -113,11 +155,53 @@ public class GameModel {
      */
     public BattleManager startFinalBattle() {
         List<Enemy> enemies = new ArrayList<>();
-        enemies.add(EnemyFactory.getEnemy("Beast"));
-        enemies.add(EnemyFactory.getEnemy("Knight"));
-        enemies.add(EnemyFactory.getEnemy("Wizard"));
+        for (String name : FINAL_BATTLE_ENEMIES) {
+            enemies.add(EnemyFactory.getEnemy(name));
+        }
 
-        return new BattleManager(player, enemies);
+        return record(new BattleManager(player, enemies, random.nextLong()));
+    }
+
+    /**
+     * Starts recording the battle if REPLAY_DIRECTORY_PROPERTY is set.
+     */
+    private static BattleManager record(BattleManager battle) {
+        if (System.getProperty(REPLAY_DIRECTORY_PROPERTY) != null) {
+            battle.startRecording();
+        }
+        return battle;
+    }
+
+    /**
+     * Writes a recorded battle into the directory named by REPLAY_DIRECTORY_PROPERTY, as its seed in hex followed by
+     * BattleReplay.FILE_EXTENSION. Does nothing if the battle was not recorded. Must be called after postGame.
+     *
+     * @param battle Battle that is over.
+     */
+    public static void saveReplay(BattleManager battle) {
+        String directory = System.getProperty(REPLAY_DIRECTORY_PROPERTY);
+        if (directory != null) {
+            saveReplay(battle, Paths.get(directory));
+        }
+    }
+
+    /**
+     * Like saveReplay(battle), but into the given directory.
+     *
+     * @param battle    Battle that is over.
+     * @param directory Directory to write into. Created if it does not exist.
+     */
+    public static void saveReplay(BattleManager battle, Path directory) {
+        if (battle.getRecorder() == null) {
+            return;
+        }
+        try {
+            BattleReplay replay = battle.getRecorder().getReplay();
+            Files.createDirectories(directory);
+            replay.write(directory.resolve(Long.toHexString(replay.getSeed()) + BattleReplay.FILE_EXTENSION));
+        } catch (IOException e) {
+            System.err.println("Error saving the replay of the battle: " + e.getMessage());
+        }
     }
 
     /**
@@ -127,6 +211,27 @@ public class GameModel {
         return player;
     }
 
+    /**
+     * @return The shop of this game session.
+     */
+    public Shop getShop() {
+        return shop;
+    }
+
+    /**
+     * @return The hospital of this game session, observing the player.
+     */
+    public Hospital getHospital() {
+        return hospital;
+    }
+
+    /**
+     * @return The random stream of this game session.
+     */
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
     /**
      * @return current difficulty of the game
      */
@@ -135,123 +240,147 @@ public class GameModel {
     }
 
     /**
-     * Returns path to the save file of a player with the given name. There may be no file at this location.
-     *
-     * @param name Player name to get save file path of
-     * @return relative path to where a save file of the player would be
+     * Holds the profile store, chosen by ProfileStore.BACKEND_PROPERTY, and the writer saving into it.
+     * Opened on first use.
      */
-    private static String getSaveFilePath(String name) {
-        // Returned filename is of the format prefix-hash.json, where prefix is part of the name,
-        //   and hash is the SHA-1 of the full name. This ensures that there are no naming conflicts.
+    private static class SaveHolder {
+        private static final ProfileStore STORE = openProfileStore();
+        private static final SaveWriter WRITER = new SaveWriter(STORE);
 
-        // Calculate SHA-1 hash of name
-        String hash;
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            byte[] messageDigest = md.digest(name.getBytes());
-            hash = new BigInteger(1, messageDigest).toString(16);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error getting SHA-1 hash of " + name);
+        private static ProfileStore openProfileStore() {
+            try {
+                return ProfileStore.fromSystemProperty(Paths.get(SAVE_DIRECTORY));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open saves", e);
+            }
         }
+    }
 
-        // Get the first 5 characters of the alphanumeric part of name
-        String prefix = name.replaceAll("[^a-zA-Z0-9]", "");
-        prefix = (prefix.length() > 5) ? prefix.substring(0, 5) : prefix;
+    /**
+     * @param name Case-sensitive name of the player.
+     * @return True iff the player has a profile, saved or waiting to be saved. Opens no files.
+     */
+    public static boolean profileExists(String name) {
+        return SaveHolder.WRITER.getPending(name) != null || SaveHolder.STORE.exists(name);
+    }
 
-        return "saves/" + prefix + "-" + hash + ".json";
+    /**
+     * @return Summaries of every saved profile, ordered by name. Opens no files.
+     */
+    public static List<ProfileIndex.Summary> getProfiles() {
+        return SaveHolder.STORE.listProfiles();
     }
 
     /**
-     * Returns the save state for the given player if it exists, else null
+     * Returns the save state for the given player if it exists, else null. Prefers a save still waiting to be
+     * written.
      *
      * @param name Name of player
      * @return SaveState for given name, null if player has not saved before.
      */
     private static SaveState getSaveState(String name) {
-        String fileName = getSaveFilePath(name);
-        File file = new File(fileName);
-        if (file.exists() && !file.isDirectory()) {
-            try {
-                return new Gson().fromJson(new FileReader(fileName), new TypeToken<SaveState>() {
-                }.getType());
-            } catch (IOException e) {
-                System.err.println("Error loading save file " + fileName);
-                e.printStackTrace();
-            }
+        SaveState pending = SaveHolder.WRITER.getPending(name);
+        if (pending != null) {
+            return pending;
+        }
+        try {
+            return SaveHolder.STORE.load(name);
+        } catch (IOException e) {
+            System.err.println("Error loading save file of " + name);
+            e.printStackTrace();
         }
         return null;
     }
 
     /**
-     * Stores the given Player and difficulty into a JSON save file.
+     * Queues the given Player and difficulty to be stored by the SaveWriter. Returns without waiting for the disk.
      *
      * @param player     Player to store
      * @param difficulty Current difficulty to store
      */
     private static void makeSaveState(Player player, double difficulty) {
-        SaveState save = new SaveState(player, difficulty);
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        String fileName = getSaveFilePath(player.getName());
-        try (Writer writer = new FileWriter(fileName)) {
-            gson.toJson(save, writer);
-        } catch (IOException e) {
-            System.err.println("Error saving data of " + player.getName() + " into " + fileName);
-            System.err.println(Arrays.toString(e.getStackTrace()));
-        }
+        SaveHolder.WRITER.submit(new SaveState(player, difficulty));
     }
 
     /**
-     * Loads all cards into CardFactory from data file
+     * Loads the catalog of cards and enemies the first time it is called in this process; later calls, from any
+     * GameModel, return at once. See CatalogHolder.
      *
-     * @throws RuntimeException iff the cards failed to load.
+     * @return The catalog as it was loaded. It may since have been reloaded; see Catalog.getCurrent.
+     * @throws RuntimeException iff the catalog failed to load or is invalid.
      */
-    private void loadCards() {
-        try {
-            Reader cardFile = Files.newBufferedReader(Paths.get(getClass().getResource(GameModel.CARDS_DATA_FILE).toURI()));
-            List<Card> cards = new Gson().fromJson(cardFile, new TypeToken<List<Card>>() {
-            }.getType());
-            for (Card card : cards) {
-                CardFactory.addCard(card);
+    static Catalog loadCatalog() {
+        return CatalogHolder.LOADED;
+    }
+
+    /**
+     * Holds the catalog, parsed and checked once per process on first use: from the directory named by
+     * CatalogWatcher.DIRECTORY_PROPERTY, which is then watched for changes, or else from the class path.
+     */
+    private static class CatalogHolder {
+        private static final Catalog LOADED = load();
+
+        private static Catalog load() {
+            String directory = System.getProperty(CatalogWatcher.DIRECTORY_PROPERTY);
+            try {
+                if (directory != null) {
+                    return CatalogWatcher.watch(Paths.get(directory), GameModel::checkCatalog);
+                }
+                try (Reader cardFile = openResource(CARDS_DATA_FILE);
+                     Reader enemyFile = openResource(ENEMIES_DATA_FILE)) {
+                    return Catalog.load(cardFile, enemyFile, GameModel::checkCatalog);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                throw new RuntimeException("Failed to load cards and enemies", e);
+            }
+        }
+
+        private static Reader openResource(String name) throws IOException {
+            InputStream stream = GameModel.class.getResourceAsStream(name);
+            if (stream == null) {
+                throw new FileNotFoundException(name);
             }
-        } catch (URISyntaxException | IOException e) {
-            throw new RuntimeException("Failed to load cards");
+            return new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
         }
     }
 
     /**
-     * Loads all enemies into EnemyFactory from data file
+     * Checks that the catalog has every card and enemy the game refers to by name, and that it removes no player
+     * card: players' decks, the shop and saves may still hold one.
      *
-     * @throws RuntimeException iff the the enemies failed to load.
+     * @param catalog Catalog to check
+     * @throws IllegalArgumentException iff something is missing.
      */
-    private void loadEnemies() {
-        try {
-            Reader enemyFile = Files.newBufferedReader(Paths.get(getClass().getResource(GameModel.ENEMIES_DATA_FILE).toURI()));
-
-            List<EnemyTemplate> enemies = new Gson().fromJson(enemyFile, new TypeToken<List<EnemyTemplate>>() {
-            }.getType());
-            for (EnemyTemplate enemy : enemies) {
-                EnemyFactory.addEnemyTemplate(enemy);
+    private static void checkCatalog(Catalog catalog) {
+        List<String> playerCards = new ArrayList<>(Arrays.asList(INITIAL_DECK));
+        playerCards.addAll(Shop.SHADY_CARDS);
+        for (String name : playerCards) {
+            Card card = catalog.getCard(name);
+            if (card == null || !card.isPlayerCard()) {
+                throw new IllegalArgumentException("Missing player card " + name);
+            }
+        }
+        for (String name : FINAL_BATTLE_ENEMIES) {
+            if (catalog.getEnemyTemplate(name) == null) {
+                throw new IllegalArgumentException("Missing enemy " + name);
+            }
+        }
+        for (Card card : catalog.getRemovedCards()) {
+            if (card.isPlayerCard()) {
+                throw new IllegalArgumentException("Cannot remove player card " + card.getName()
+                        + ", which decks and saves may hold");
             }
-        } catch (URISyntaxException | IOException e) {
-            throw new RuntimeException("Failed to load enemies");
         }
     }
 
     /**
      * @return A preset card deck that the player initially has.
      */
-    private static List<Card> getInitialDeck() {
-        List<Card> deck = new ArrayList<>();
-        for (int i = 0; i < 3; i++) {
-            deck.add(CardFactory.getCard("Stab"));
-            deck.add(CardFactory.getCard("Shield"));
+    public static List<Card> getInitialDeck() {
+        List<Card> deck = new ArrayList<>(INITIAL_DECK.length);
+        for (String name : INITIAL_DECK) {
+            deck.add(CardFactory.getCard(name));
         }
-        deck.add(CardFactory.getCard("Smash"));
-        deck.add(CardFactory.getCard("Defensive Stance"));
-        deck.add(CardFactory.getCard("Block"));
-        deck.add(CardFactory.getCard("Double Tap"));
-        deck.add(CardFactory.getCard("Sickle"));
-        deck.add(CardFactory.getCard("Scythe"));
         Collections.sort(deck);
         return deck;
     }
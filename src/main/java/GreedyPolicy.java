@@ -0,0 +1,49 @@
+import java.util.List;
+
+/**
+ * Plays the affordable card that deals the most damage per action point right now, aimed at the enemy it hurts the
+ * most. Falls back to defensive cards once no attack would land. Never looks ahead.
+ */
+public class GreedyPolicy implements PlayerPolicy {
+    private static final int ATTACK_BONUS = 1_000_000; // ranks any landing attack above every defensive card
+
+    @Override
+    public Move chooseMove(BattleManager battle, Player player) {
+        List<Enemy> enemies = battle.getEnemies();
+        Move best = null;
+        int bestScore = -1;
+
+        for (Card card : player.getActionDeck()) {
+            if (card.getCost() > player.getActionPoints()) {
+                continue;
+            }
+
+            Enemy target = enemies.get(0);
+            int score;
+            if (card.getDamage() * card.getHits() == 0) {
+                score = card.getDefense() + card.getShield() + card.getStrength();
+            } else {
+                int total = 0;
+                int targetScore = 0;
+                for (Enemy enemy : enemies) {
+                    int damage = Math.min(enemy.damageCalculation(player, card), enemy.getHealth());
+                    // Finishing an enemy off removes all of its future attacks, so favour kills.
+                    int enemyScore = damage + (damage >= enemy.getHealth() ? enemy.getMaxHealth() : 0);
+                    total += enemyScore;
+                    if (enemyScore > targetScore) {
+                        targetScore = enemyScore;
+                        target = enemy;
+                    }
+                }
+                int damageScore = card.isAttackAll() ? total : targetScore;
+                score = (damageScore > 0) ? ATTACK_BONUS + damageScore * 100 / Math.max(card.getCost(), 1) : 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                best = new Move(card, target);
+            }
+        }
+        return best;
+    }
+}
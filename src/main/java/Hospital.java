@@ -1,5 +1,5 @@
 /**
- * This contains all of the hospital functionality.
+ * This contains all of the hospital functionality. Each GameModel has its own hospital.
  */
 public class Hospital {
 
@@ -46,18 +46,4 @@ public class Hospital {
         player.takeGold(getHealingCost());
         player.heal(player.getMaxHealth() - player.getHealth());
     }
-
-    /**
-     * Holds the hospital.
-     */
-    private static class HospitalHolder {
-        private static final Hospital INSTANCE = new Hospital();
-    }
-
-    /**
-     * @return The current instance of the hospital.
-     */
-    public static Hospital getInstance() {
-        return HospitalHolder.INSTANCE;
-    }
 }
@@ -33,7 +33,6 @@ public class HospitalController extends ApplicationController implements Initial
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        hospital = Hospital.getInstance();
         HospitalDialogueBox.setStyle("-fx-border-color: black");
         HospitalNextButton.setText("Next");
 
@@ -85,7 +84,7 @@ public class HospitalController extends ApplicationController implements Initial
      */
     public void setModel(GameModel model) {
         this.model = model;
-        hospital.setPlayer(model.getPlayer());
+        hospital = model.getHospital();
         setPlayerDisplay();
     }
 
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to int values, with no boxing.
+ * <p>
+ * Meant for memo tables that are filled and thrown away many times over: clear takes constant time, so a single map
+ * can be reused for every search without reallocating or wiping its arrays.
+ */
+public final class LongIntMap {
+    private static final int MIN_CAPACITY = 1 << 10;
+
+    private long[] keys;
+    private int[] values;
+    private int[] stamps; // a slot is in use iff its stamp equals generation
+    private int generation = 1;
+    private int size;
+
+    public LongIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @param key     Key to look up.
+     * @param missing Value to return if the key is not in the map.
+     * @return The value of the key, or missing.
+     */
+    public int get(long key, int missing) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; stamps[slot] == generation; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Maps the key to the value, replacing any previous value.
+     */
+    public void put(long key, int value) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (stamps[slot] == generation) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        stamps[slot] = generation;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * @return The number of keys in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every key. Keeps the arrays for reuse.
+     */
+    public void clear() {
+        size = 0;
+        if (++generation == 0) { // wrapped around: old stamps could look current again
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] oldStamps = stamps;
+        int oldGeneration = generation;
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStamps[i] == oldGeneration) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        stamps = new int[capacity];
+        generation = 1;
+    }
+
+    private static int hash(long key) {
+        // Mixes every bit of the key into the low bits used for the slot.
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,198 @@
+import com.google.gson.annotations.SerializedName;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * What an enemy type drops when it is killed: some gold, and a few rolls for cards.
+ * <p>
+ * Each roll drops a card with the type's drop chance, and which card is picked in proportion to the card's weight,
+ * so rare cards can be offered rarely. Unless enemies.json says otherwise there is one roll per card that can drop,
+ * so a kill drops as many cards on average as when each of its cards dropped with the drop chance on its own. A roll is a single draw from an AliasTable over the cards plus a "nothing"
+ * outcome, so it takes constant time however many cards there are. Because the outcomes are fixed, the chance of
+ * every drop can be computed exactly (see getDropChance and getExpectedGold) instead of by simulating battles.
+ * <p>
+ * Immutable, and shared by every enemy of a type. Built by EnemyTemplate.resolve from enemies.json.
+ */
+public final class LootTable {
+    /**
+     * How rare a drop is. Gives the card's weight unless enemies.json sets the weight itself.
+     */
+    public enum Rarity {
+        @SerializedName("common") COMMON(6),
+        @SerializedName("uncommon") UNCOMMON(3),
+        @SerializedName("rare") RARE(1);
+
+        public final double weight; // weight of a card of this rarity
+
+        Rarity(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    private final int[] cardIds; // the cards that can drop, outcome i of the table
+    private final double[] chances; // chance that a single roll drops card i
+    private final AliasTable table; // outcomes 0 .. cardIds.length - 1 are cards, cardIds.length is nothing
+    private final int rolls; // the number of card rolls per kill
+    private final int minGold; // the least gold dropped
+    private final int maxGold; // the most gold dropped
+
+    /**
+     * Constructor.
+     *
+     * @param cardIds    Ids of the cards that can drop. Not copied; must not change.
+     * @param weights    Relative weights of the cards, non-negative.
+     * @param dropChance Chance that a roll drops a card at all, from 0 to 1.
+     * @param rolls      Number of card rolls per kill, at least 0.
+     * @param gold       The most gold dropped, at least 0. At least half of it is always dropped.
+     * @throws IllegalArgumentException if the arguments are out of range.
+     */
+    public LootTable(int[] cardIds, double[] weights, double dropChance, int rolls, int gold) {
+        if (cardIds.length != weights.length) {
+            throw new IllegalArgumentException("Every card drop needs a weight");
+        }
+        if (!(dropChance >= 0 && dropChance <= 1) || rolls < 0 || gold < 0) {
+            throw new IllegalArgumentException("Invalid drop chance " + dropChance + ", rolls " + rolls
+                    + " or gold " + gold);
+        }
+        double total = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Invalid drop weight " + weight);
+            }
+            total += weight;
+        }
+        if (!(total > 0)) {
+            dropChance = 0; // nothing to drop
+        }
+
+        this.cardIds = cardIds;
+        this.rolls = rolls;
+        minGold = gold - gold / 2;
+        maxGold = gold;
+
+        chances = new double[cardIds.length];
+        double[] outcomes = new double[cardIds.length + 1];
+        for (int i = 0; i < cardIds.length; i++) {
+            chances[i] = (dropChance > 0) ? dropChance * weights[i] / total : 0;
+            outcomes[i] = chances[i];
+        }
+        outcomes[cardIds.length] = 1 - dropChance;
+        table = new AliasTable(outcomes);
+    }
+
+    /**
+     * Builds the table of an enemy whose drops all have the same weight.
+     *
+     * @param cardIds Ids of the cards that can drop. Not copied; must not change.
+     * @param gold    The most gold dropped.
+     * @return Table with GameModel.DROP_CHANCE and defaultRolls.
+     */
+    public static LootTable uniform(int[] cardIds, int gold) {
+        double[] weights = new double[cardIds.length];
+        Arrays.fill(weights, Rarity.COMMON.weight);
+        return new LootTable(cardIds, weights, GameModel.DROP_CHANCE, defaultRolls(cardIds), gold);
+    }
+
+    /**
+     * @param cardIds Ids of the cards that can drop.
+     * @return The number of card rolls per kill unless enemies.json says otherwise: one per different card.
+     */
+    public static int defaultRolls(int[] cardIds) {
+        return (int) Arrays.stream(cardIds).distinct().count();
+    }
+
+    /**
+     * Draws the gold dropped by a kill: uniformly from half the gold (rounded up) to all of it.
+     *
+     * @param random Random stream to draw from.
+     * @return Gold dropped.
+     */
+    public int rollGold(SplittableRandom random) {
+        return minGold + random.nextInt(maxGold - minGold + 1);
+    }
+
+    /**
+     * Draws the cards dropped by a kill, one roll at a time. A card can come up more than once.
+     *
+     * @param random Random stream to draw from.
+     * @param drops  Told the id of every card dropped, in the order rolled.
+     */
+    public void rollCards(SplittableRandom random, IntConsumer drops) {
+        for (int i = 0; i < rolls; i++) {
+            int outcome = table.sample(random);
+            if (outcome < cardIds.length) {
+                drops.accept(cardIds[outcome]);
+            }
+        }
+    }
+
+    /**
+     * @return Ids of the cards that can drop. Must not be changed.
+     */
+    int[] getCardIds() {
+        return cardIds;
+    }
+
+    /**
+     * @param cardId Id of a card.
+     * @return The exact chance that a kill drops the card at least once.
+     */
+    public double getDropChance(int cardId) {
+        double perRoll = 0;
+        for (int i = 0; i < cardIds.length; i++) {
+            if (cardIds[i] == cardId) {
+                perRoll += chances[i];
+            }
+        }
+        return 1 - Math.pow(1 - perRoll, rolls);
+    }
+
+    /**
+     * @return The expected number of cards a kill drops, counting repeats.
+     */
+    public double getExpectedCards() {
+        double perRoll = 0;
+        for (double chance : chances) {
+            perRoll += chance;
+        }
+        return perRoll * rolls;
+    }
+
+    /**
+     * @return The expected gold a kill drops.
+     */
+    public double getExpectedGold() {
+        return (minGold + maxGold) / 2.0;
+    }
+
+    /**
+     * @param catalog Catalog to look up the card names in.
+     * @return Summary of the expected drops of a kill, e.g. "15.0 gold, 1.20 cards: Roll 47.2%, Dab 47.2%".
+     */
+    public String describe(Catalog catalog) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%.1f gold, %.2f cards", getExpectedGold(), getExpectedCards()));
+        String separator = ": ";
+        for (int i = 0; i < cardIds.length; i++) {
+            if (indexOf(cardIds[i]) < i) {
+                continue; // already listed
+            }
+            Card card = catalog.getCard(cardIds[i]);
+            text.append(separator).append((card != null) ? card.getName() : "#" + cardIds[i])
+                    .append(String.format(" %.1f%%", 100 * getDropChance(cardIds[i])));
+            separator = ", ";
+        }
+        return text.toString();
+    }
+
+    private int indexOf(int cardId) {
+        for (int i = 0; i < cardIds.length; i++) {
+            if (cardIds[i] == cardId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
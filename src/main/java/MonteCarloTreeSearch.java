@@ -0,0 +1,328 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays the player's side of a battle by Monte Carlo Tree Search.
+ * <p>
+ * Every decision is searched from scratch. Each worker thread copies the battle, grows its own tree over the
+ * player's card and target choices (and ending the turn), and plays random rollouts through the enemies' turns.
+ * The trees are open-loop: a node stands for a sequence of choices rather than one exact state, since shuffles and
+ * enemy moves are random. The workers' root statistics are merged and the most visited choice wins.
+ */
+public class MonteCarloTreeSearch implements PlayerPolicy {
+    private static final int END_TURN = -1; // the action of ending the turn
+    private static final int HORIZON_TURNS = 12; // rollouts stop and are scored this many turns after the root
+    private static final double EXPLORATION = 1.4; // UCT exploration constant
+
+    private final int threads; // number of trees searched in parallel
+    private final long timeBudgetNanos; // time allowed per decision, 0 for no limit
+    private final int iterationBudget; // iterations allowed per decision across all threads, 0 for no limit
+    private final ForkJoinPool pool; // runs the workers
+    private final LongAdder searches = new LongAdder(); // searches since the stats were last reset
+    private final LongAdder rollouts = new LongAdder(); // rollouts played by those searches
+    private final LongAdder coreNanos = new LongAdder(); // their elapsed time times their threads
+
+    /**
+     * Constructor. At least one of the budgets must be positive.
+     *
+     * @param threads          Number of trees to search in parallel.
+     * @param timeBudgetMillis Time allowed per decision in milliseconds, 0 for no limit.
+     * @param iterationBudget  Iterations allowed per decision across all threads, 0 for no limit.
+     */
+    public MonteCarloTreeSearch(int threads, long timeBudgetMillis, int iterationBudget) {
+        this(threads, timeBudgetMillis, iterationBudget, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor. At least one of the budgets must be positive.
+     *
+     * @param threads          Number of trees to search in parallel.
+     * @param timeBudgetMillis Time allowed per decision in milliseconds, 0 for no limit.
+     * @param iterationBudget  Iterations allowed per decision across all threads, 0 for no limit.
+     * @param pool             Pool to run the searches on.
+     */
+    public MonteCarloTreeSearch(int threads, long timeBudgetMillis, int iterationBudget, ForkJoinPool pool) {
+        if (threads < 1 || timeBudgetMillis < 0 || iterationBudget < 0 || (timeBudgetMillis == 0 && iterationBudget == 0)) {
+            throw new IllegalArgumentException("need at least one thread and one positive budget");
+        }
+        this.threads = threads;
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000;
+        this.iterationBudget = iterationBudget;
+        this.pool = pool;
+    }
+
+    /**
+     * Totals are added up over every search, so the numbers stay right when several threads share this policy,
+     * as the simulator's workers do.
+     *
+     * @return Throughput of every search since the policy was created or resetStats was called.
+     */
+    public SearchStats getStats() {
+        return new SearchStats(searches.sum(), rollouts.sum(), coreNanos.sum());
+    }
+
+    /**
+     * Starts the totals of getStats over, e.g. at the start of a turn. Searches running at the same time may be
+     * counted partly before and partly after.
+     */
+    public void resetStats() {
+        searches.reset();
+        rollouts.reset();
+        coreNanos.reset();
+    }
+
+    @Override
+    public Move chooseMove(BattleManager battle, Player player) {
+        List<Integer> rootActions = new ArrayList<>();
+        legalActions(battle, rootActions);
+        if (rootActions.size() == 1) { // only ending the turn is possible
+            return null;
+        }
+
+        long start = System.nanoTime();
+        long deadline = (timeBudgetNanos == 0) ? Long.MAX_VALUE : start + timeBudgetNanos;
+        int iterationsPerThread = (iterationBudget == 0) ? Integer.MAX_VALUE : (iterationBudget + threads - 1) / threads;
+
+        List<Callable<Node>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            BattleManager copy = battle.copy(battle.getRandom().nextLong());
+            workers.add(() -> search(copy, deadline, iterationsPerThread));
+        }
+
+        // Merge the roots: total visits per action across every worker's tree.
+        List<Integer> actions = new ArrayList<>();
+        List<Integer> visits = new ArrayList<>();
+        long searchRollouts = 0;
+        for (Future<Node> future : pool.invokeAll(workers)) {
+            Node root;
+            try {
+                root = future.get();
+            } catch (Exception e) {
+                throw new RuntimeException("Search failed", e);
+            }
+            searchRollouts += root.visits;
+            for (Node child : root.children) {
+                int index = actions.indexOf(child.action);
+                if (index < 0) {
+                    actions.add(child.action);
+                    visits.add(child.visits);
+                } else {
+                    visits.set(index, visits.get(index) + child.visits);
+                }
+            }
+        }
+        searches.increment();
+        rollouts.add(searchRollouts);
+        coreNanos.add((System.nanoTime() - start) * threads);
+
+        int best = END_TURN;
+        int bestVisits = -1;
+        for (int i = 0; i < actions.size(); i++) {
+            if (visits.get(i) > bestVisits) {
+                bestVisits = visits.get(i);
+                best = actions.get(i);
+            }
+        }
+        if (best == END_TURN) {
+            return null;
+        }
+        return new Move(battle.getCatalog().getCard(best >> 8), battle.getEnemies().get(best & 0xFF));
+    }
+
+    /**
+     * Grows one tree on the given copy of the battle until a budget runs out.
+     *
+     * @param battle     Copy of the battle owned by this worker.
+     * @param deadline   System.nanoTime at which to stop.
+     * @param iterations Maximum number of iterations.
+     * @return Root of the tree.
+     */
+    private static Node search(BattleManager battle, long deadline, int iterations) {
+        SplittableRandom random = battle.getRandom();
+        Player player = battle.getPlayer();
+        BattleState rootState = battle.snapshot();
+        int rootTurn = battle.getTurn();
+        int rootEnemyHealth = totalEnemyHealth(battle);
+        Node root = new Node(END_TURN, null);
+        List<Integer> legal = new ArrayList<>();
+
+        for (int i = 0; i < iterations && System.nanoTime() < deadline; i++) {
+            battle.restore(rootState);
+            Node node = root;
+
+            // Selection and expansion: walk down by UCT until reaching an action not tried from this node yet.
+            while (!isFinished(battle, rootTurn)) {
+                legalActions(battle, legal);
+                Node next = null;
+                List<Integer> untried = new ArrayList<>(legal);
+                for (Node child : node.children) {
+                    untried.remove((Integer) child.action);
+                }
+                if (!untried.isEmpty()) {
+                    next = new Node(untried.get(random.nextInt(untried.size())), node);
+                    node.children.add(next);
+                    applyAction(battle, next.action);
+                    node = next;
+                    break;
+                }
+                double bestScore = Double.NEGATIVE_INFINITY;
+                for (Node child : node.children) {
+                    if (!legal.contains(child.action)) {
+                        continue;
+                    }
+                    double score = child.value / child.visits
+                            + EXPLORATION * Math.sqrt(Math.log(node.visits) / child.visits);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        next = child;
+                    }
+                }
+                applyAction(battle, next.action);
+                node = next;
+            }
+
+            // Rollout: random cards until the battle ends or the horizon is reached.
+            while (!isFinished(battle, rootTurn)) {
+                legalActions(battle, legal);
+                int action = (legal.size() == 1) ? END_TURN : legal.get(1 + random.nextInt(legal.size() - 1));
+                applyAction(battle, action);
+            }
+
+            double value = evaluate(battle, player, rootEnemyHealth);
+            for (Node n = node; n != null; n = n.parent) {
+                n.visits++;
+                n.value += value;
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Fills the given list with every choice the player has right now. Ending the turn always comes first.
+     * A card with a single target (or none) only appears once, with target 0.
+     */
+    private static void legalActions(BattleManager battle, List<Integer> actions) {
+        actions.clear();
+        actions.add(END_TURN);
+        Player player = battle.getPlayer();
+        int enemies = battle.getEnemies().size();
+        for (Card card : player.getActionDeck()) {
+            if (card.getCost() > player.getActionPoints()) {
+                continue;
+            }
+            boolean targeted = card.getDamage() * card.getHits() != 0 && !card.isAttackAll();
+            for (int target = 0; target < (targeted ? enemies : 1); target++) {
+                Integer action = (card.getId() << 8) | target;
+                if (!actions.contains(action)) {
+                    actions.add(action);
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays the given action. Ends the turn automatically when the player cannot play anything else, like the views.
+     */
+    private static void applyAction(BattleManager battle, int action) {
+        Player player = battle.getPlayer();
+        if (action != END_TURN) {
+            battle.playerAction(battle.getCatalog().getCard(action >> 8), battle.getEnemies().get(action & 0xFF));
+            if (battle.isBattleOver() || (player.getActionPoints() > 0 && !player.isActionDeckEmpty())) {
+                return;
+            }
+        }
+        battle.preEnemyTurn();
+        BattleSimulator.playEnemyTurn(battle, player);
+        battle.postTurn();
+        if (!battle.isBattleOver()) {
+            battle.calculateEnemyMoves();
+            battle.prePlayerTurn();
+        }
+    }
+
+    /**
+     * @return True iff the battle is over or the search horizon has been reached.
+     */
+    private static boolean isFinished(BattleManager battle, int rootTurn) {
+        return battle.isBattleOver() || battle.getTurn() - rootTurn >= HORIZON_TURNS;
+    }
+
+    /**
+     * Scores the battle between 0 and 1. Wins always score above 0.6, losses below 0.2.
+     */
+    private static double evaluate(BattleManager battle, Player player, int rootEnemyHealth) {
+        double health = (double) player.getHealth() / player.getMaxHealth();
+        double damage = 1 - (double) totalEnemyHealth(battle) / Math.max(rootEnemyHealth, 1);
+        if (player.isDead()) {
+            return 0.2 * damage;
+        } else if (battle.isBattleOver()) {
+            return 0.6 + 0.4 * health;
+        }
+        return 0.2 + 0.2 * damage + 0.2 * health;
+    }
+
+    private static int totalEnemyHealth(BattleManager battle) {
+        int total = 0;
+        for (Enemy enemy : battle.getEnemies()) {
+            total += enemy.getHealth();
+        }
+        return total;
+    }
+
+    /**
+     * A node of an open-loop search tree.
+     */
+    private static final class Node {
+        final int action; // the action leading here from the parent
+        final Node parent;
+        final List<Node> children = new ArrayList<>();
+        int visits;
+        double value; // sum of the rollout scores through this node
+
+        Node(int action, Node parent) {
+            this.action = action;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Throughput of a number of searches.
+     */
+    public static class SearchStats {
+        private final long searches;
+        private final long rollouts;
+        private final long coreNanos; // elapsed time of each search times its threads
+
+        SearchStats(long searches, long rollouts, long coreNanos) {
+            this.searches = searches;
+            this.rollouts = rollouts;
+            this.coreNanos = coreNanos;
+        }
+
+        public long getSearches() {
+            return searches;
+        }
+
+        public long getRollouts() {
+            return rollouts;
+        }
+
+        /**
+         * @return Rollouts per second per thread searching, or 0 if nothing has been searched.
+         */
+        public double getRolloutsPerSecondPerCore() {
+            return (coreNanos == 0) ? 0 : rollouts / (coreNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rollouts in %d searches (%.0f rollouts/s/core)",
+                    rollouts, searches, getRolloutsPerSecondPerCore());
+        }
+    }
+}
@@ -5,10 +5,6 @@ import java.util.*;
  */
 public class Player extends Being {
 
-    //    private int drawSize; // the number of cards the player starts off their turn with in the actionDeck.
-//    private List<Card> drawPile; // the cards the player is yet to draw.
-//    private List<Card> actionDeck; // the cards in the player's hand.
-//    private List<Card> discardPile; // the cards the player has already seen.
     private int gold; // the gold the player will stockpile and use
 
     /**
@@ -22,17 +18,40 @@ public class Player extends Being {
      */
 
     public Player(String name, int maxHealth, int maxActionPoints, List<Card> deck, int drawSize) {
+        this(name, maxHealth, maxActionPoints, CardFactory.toIds(deck), drawSize);
+    }
+
+    /**
+     * Constructor. Also fills the Player's health and action points to full.
+     *
+     * @param name            The name of the player.
+     * @param maxHealth       The maximum health of the player.
+     * @param maxActionPoints The maximum actionPoints of the player.
+     * @param deck            The ids of the cards in the deck the player starts with.
+     * @param drawSize        the number of cards the player starts off their turn with in the actionDeck.
+     */
+    public Player(String name, int maxHealth, int maxActionPoints, int[] deck, int drawSize) {
         super(name, maxHealth, maxActionPoints, deck);
 
         // make sure each card is a valid player card
-        for (Card card : deck) {
-            assert (card.isPlayableBy(this));
+        for (int id : deck) {
+            assert (CardFactory.getCard(id).isPlayableBy(this));
         }
 
         this.drawSize = drawSize;
         gold = 0;
     }
 
+    /**
+     * Copy constructor. See Being's copy constructor.
+     *
+     * @param other The player to copy.
+     */
+    public Player(Player other) {
+        super(other);
+        gold = other.gold;
+    }
+
     /**
      * @return the gold in the player's inventory
      */
@@ -64,7 +83,7 @@ public class Player extends Being {
      * @param card the card to be added into the player's deck.
      */
     public void deckAdd(Card card) {
-        deck.add(card);
+        addToDeck(card.getId());
     }
 
     /**
@@ -114,24 +133,27 @@ public class Player extends Being {
         actionPoints -= card.getCost();
         assert actionPoints >= 0;
 
-        actionDeck.remove(card);
-        if (!card.isSingleUse()) {
-            discardPile.add(card);
-        }
+        discardFromActionDeck(card);
     }
 
+    /**
+     * Clears the player's defense, shield and strength at the end of a battle.
+     */
     public void battleEndStatsReset() {
         if (defense > 0) {
-            System.out.println(name + "'s defense wears off.");
+            int wornOff = defense;
             defense = 0;
+            listener.buffWoreOff(this, BattleEventListener.Stat.DEFENSE, wornOff);
         }
         if (shield > 0) {
-            System.out.println(name + "'s shield wears off.");
+            int wornOff = shield;
             shield = 0;
+            listener.buffWoreOff(this, BattleEventListener.Stat.SHIELD, wornOff);
         }
         if (strength > 0) {
-            System.out.println(name + "'s strength wears off.");
+            int wornOff = strength;
             strength = 0;
+            listener.buffWoreOff(this, BattleEventListener.Stat.STRENGTH, wornOff);
         }
     }
 
@@ -153,10 +175,46 @@ public class Player extends Being {
     }
 
     /**
-     * Sorts the player's deck in alphabetical order
+     * Sorts the player's deck in alphabetical order of card names, as the catalog of its last battle names them (or
+     * the current one, if the deck has cards that catalog does not know). Sorts the ids by their precomputed name
+     * rank, so no names are compared.
      */
     public void sortDeck() {
-        Collections.sort(deck);
+        Catalog catalog = getCatalog();
+        for (int i = 0; i < deckSize; i++) {
+            if (deck[i] >= catalog.getCardCount()) { // bought after a reload; the current catalog knows every id
+                catalog = Catalog.getCurrent();
+                break;
+            }
+        }
+        int[] nameRanks = catalog.getNameRanks();
+        int[] idsByName = catalog.getIdsByName();
+        for (int i = 0; i < deckSize; i++) {
+            deck[i] = nameRanks[deck[i]];
+        }
+        Arrays.sort(deck, 0, deckSize);
+        for (int i = 0; i < deckSize; i++) {
+            deck[i] = idsByName[deck[i]];
+        }
+    }
+
+    @Override
+    protected int stateSize() {
+        return super.stateSize() + 1;
+    }
+
+    @Override
+    protected int writeState(int[] data, int offset) {
+        offset = super.writeState(data, offset);
+        data[offset++] = gold;
+        return offset;
+    }
+
+    @Override
+    protected int readState(int[] data, int offset) {
+        offset = super.readState(data, offset);
+        gold = data[offset++];
+        return offset;
     }
 
     @Override
@@ -0,0 +1,47 @@
+/**
+ * Decides which cards the player plays during a headless battle. Used by BattleSimulator in place of a human.
+ */
+public interface PlayerPolicy {
+
+    /**
+     * Picks the next card to play this turn. Called repeatedly while the player has action points and cards in hand.
+     * Implementations must not modify the battle.
+     *
+     * @param battle The battle being played. prePlayerTurn has already been called.
+     * @param player The player whose turn it is.
+     * @return The Move to make, or null to end the turn.
+     */
+    Move chooseMove(BattleManager battle, Player player);
+
+    /**
+     * A single card play: a card from the player's action deck and the enemy to play it against.
+     */
+    final class Move {
+        private final Card card;
+        private final Enemy target;
+
+        /**
+         * Constructor.
+         *
+         * @param card   Card in the player's action deck with sufficient action points
+         * @param target Enemy to play the card against. Ignored by attack all and defensive cards.
+         */
+        public Move(Card card, Enemy target) {
+            this.card = card;
+            this.target = target;
+        }
+
+        public Card getCard() {
+            return card;
+        }
+
+        public Enemy getTarget() {
+            return target;
+        }
+
+        @Override
+        public String toString() {
+            return card.getName() + " -> " + target.getName();
+        }
+    }
+}
@@ -0,0 +1,468 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Persistent, memory-mapped directory of every profile in a ProfileStore: whether it exists, where it is, when it
+ * was last saved, and a summary of the player. Lookups and listings read the mapping and never open a file.
+ * <p>
+ * The file is a header, a table of fixed-size entries sorted by a 64-bit hash of the player's name, and a heap of
+ * the names themselves and of the ProfileStore's file names:
+ * <pre>
+ *   header (32 bytes): int magic ("KDPI"), int version, int entry count, int entry capacity,
+ *                      int heap size, int heap capacity, 8 bytes unused
+ *   entry (64 bytes):  long name hash, long location, long last modified (ms), int name offset, int name length,
+ *                      int health, int max health, int gold, int deck size, double difficulty,
+ *                      int file offset, int file length
+ * </pre>
+ * Saving a known profile rewrites its entry in place. A new profile is inserted into the sorted table, which moves
+ * the entries after it; when the table or heap is full the file is rewritten twice as large and renamed over the old
+ * one. Where the save is kept is up to the ProfileStore: the name of the file it is in, an offset into that file, or
+ * both. Giving a different file name adds it to the heap; the old one stays there unused.
+ * <p>
+ * Thread-safe.
+ */
+public final class ProfileIndex implements Closeable {
+    private static final int MAGIC = 0x4B445049; // "KDPI"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final int ENTRY_BYTES = 64;
+    private static final int INITIAL_CAPACITY = 256; // entries
+    private static final int INITIAL_HEAP_CAPACITY = 16 * INITIAL_CAPACITY; // bytes of names
+
+    // Header fields.
+    private static final int COUNT = 8;
+    private static final int CAPACITY = 12;
+    private static final int HEAP_SIZE = 16;
+    private static final int HEAP_CAPACITY = 20;
+
+    // Entry fields.
+    private static final int HASH = 0;
+    private static final int LOCATION = 8;
+    private static final int LAST_MODIFIED = 16;
+    private static final int NAME_OFFSET = 24;
+    private static final int NAME_LENGTH = 28;
+    private static final int HEALTH = 32;
+    private static final int MAX_HEALTH = 36;
+    private static final int GOLD = 40;
+    private static final int DECK_SIZE = 44;
+    private static final int DIFFICULTY = 48;
+    private static final int FILE_OFFSET = 56;
+    private static final int FILE_LENGTH = 60;
+
+    private final Path path;
+    private MappedByteBuffer map; // the whole file, guarded by this
+    private final boolean created; // true iff the file did not exist (or was unreadable) when opened
+
+    /**
+     * Opens the index file, creating an empty one if it does not exist or is not a valid index.
+     *
+     * @param path Index file.
+     * @throws IOException if the file cannot be opened or created.
+     */
+    public ProfileIndex(Path path) throws IOException {
+        this.path = path;
+        boolean valid = false;
+        if (Files.isRegularFile(path) && Files.size(path) >= HEADER_BYTES) {
+            map = mapFile(path);
+            valid = map.getInt(0) == MAGIC && map.getInt(4) == VERSION
+                    && map.capacity() == fileSize(map.getInt(CAPACITY), map.getInt(HEAP_CAPACITY));
+        }
+        if (!valid) {
+            map = createFile(path, INITIAL_CAPACITY, INITIAL_HEAP_CAPACITY);
+        }
+        created = !valid;
+    }
+
+    /**
+     * @return True iff the index file had to be created when opened, so the ProfileStore should fill it in.
+     */
+    public boolean isNew() {
+        return created;
+    }
+
+    /**
+     * @param name Case-sensitive name of the player.
+     * @return True iff the player has a profile.
+     */
+    public synchronized boolean contains(String name) {
+        return find(name, hash(name)) >= 0;
+    }
+
+    /**
+     * @param name Case-sensitive name of the player.
+     * @return Summary of the player's profile, or null if the player has none.
+     */
+    public synchronized Summary get(String name) {
+        int entry = find(name, hash(name));
+        return (entry < 0) ? null : summary(entry);
+    }
+
+    /**
+     * @return Summaries of every profile, ordered by name.
+     */
+    public synchronized List<Summary> list() {
+        int count = map.getInt(COUNT);
+        List<Summary> summaries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            summaries.add(summary(i));
+        }
+        summaries.sort(Comparator.comparing(Summary::getName));
+        return summaries;
+    }
+
+    /**
+     * Records a save of a player, adding the player if they are new. Keeps the file name recorded before, if any.
+     *
+     * @param save         The save.
+     * @param location     Where the ProfileStore keeps the save, or -1.
+     * @param lastModified When the save was written, in milliseconds since the epoch.
+     * @throws IOException if the index needs to grow and the larger file cannot be written.
+     */
+    public void put(SaveState save, long location, long lastModified) throws IOException {
+        put(save, null, location, lastModified);
+    }
+
+    /**
+     * Records a save of a player, adding the player if they are new.
+     *
+     * @param save         The save.
+     * @param file         Name of the file the ProfileStore keeps the save in, or null to keep the one recorded before.
+     * @param location     Where in the file the save is, or -1.
+     * @param lastModified When the save was written, in milliseconds since the epoch.
+     * @throws IOException if the index needs to grow and the larger file cannot be written.
+     */
+    public synchronized void put(SaveState save, String file, long location, long lastModified) throws IOException {
+        long hash = hash(save.name);
+        int entry = find(save.name, hash);
+        if (entry < 0) {
+            entry = insert(save.name, hash);
+        }
+        int at = entryOffset(entry);
+        if (file != null && !file.equals(fileAt(entry))) {
+            byte[] fileBytes = file.getBytes(StandardCharsets.UTF_8);
+            int fileOffset = putHeap(fileBytes); // may grow, and so replace, the map
+            map.putInt(at + FILE_OFFSET, fileOffset);
+            map.putInt(at + FILE_LENGTH, fileBytes.length);
+        }
+        map.putLong(at + LOCATION, location);
+        map.putLong(at + LAST_MODIFIED, lastModified);
+        map.putInt(at + HEALTH, save.health);
+        map.putInt(at + MAX_HEALTH, save.maxHealth);
+        map.putInt(at + GOLD, save.gold);
+        map.putInt(at + DECK_SIZE, (save.deck == null) ? 0 : save.deck.size());
+        map.putDouble(at + DIFFICULTY, save.difficulty);
+    }
+
+    /**
+     * Changes where the ProfileStore keeps a player's save, e.g. after compacting its file.
+     *
+     * @param name     Case-sensitive name of the player. Must have a profile.
+     * @param location New location of the save.
+     */
+    public synchronized void relocate(String name, long location) {
+        int entry = find(name, hash(name));
+        if (entry < 0) {
+            throw new IllegalArgumentException("No profile named " + name);
+        }
+        map.putLong(entryOffset(entry) + LOCATION, location);
+    }
+
+    /**
+     * Writes any changes still only in memory to the disk.
+     */
+    public synchronized void force() {
+        map.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        map.force();
+    }
+
+    /**
+     * @return Index of the entry for the name, or -(insertion point) - 1 if there is none.
+     */
+    private int find(String name, long hash) {
+        int low = 0;
+        int high = map.getInt(COUNT) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midHash = map.getLong(entryOffset(mid) + HASH);
+            if (midHash < hash) {
+                low = mid + 1;
+            } else if (midHash > hash) {
+                high = mid - 1;
+            } else {
+                // Found the hash. Names with the same hash sit next to each other; check them all.
+                int first = mid;
+                while (first > 0 && map.getLong(entryOffset(first - 1) + HASH) == hash) {
+                    first--;
+                }
+                int end = mid;
+                while (end < map.getInt(COUNT) && map.getLong(entryOffset(end) + HASH) == hash) {
+                    if (nameAt(end).equals(name)) {
+                        return end;
+                    }
+                    end++;
+                }
+                for (int i = first; i < mid; i++) {
+                    if (nameAt(i).equals(name)) {
+                        return i;
+                    }
+                }
+                return -end - 1;
+            }
+        }
+        return -low - 1;
+    }
+
+    /**
+     * Adds an empty entry for a new name at its sorted position, growing the file first if needed.
+     *
+     * @return Index of the new entry.
+     */
+    private int insert(String name, long hash) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int count = map.getInt(COUNT);
+        if (count == map.getInt(CAPACITY)) {
+            grow(nameBytes.length);
+        }
+
+        int entry = -find(name, hash) - 1;
+        // Shift the later entries down by one.
+        ByteBuffer tail = map.duplicate();
+        tail.position(entryOffset(entry));
+        tail.limit(entryOffset(count));
+        ByteBuffer moved = ByteBuffer.allocate(tail.remaining());
+        moved.put(tail);
+        moved.flip();
+        ByteBuffer target = map.duplicate();
+        target.position(entryOffset(entry + 1));
+        target.put(moved);
+
+        int at = entryOffset(entry);
+        for (int i = 0; i < ENTRY_BYTES; i += 8) {
+            map.putLong(at + i, 0);
+        }
+        map.putInt(COUNT, count + 1);
+        map.putLong(at + HASH, hash);
+        int nameOffset = putHeap(nameBytes); // may grow, and so replace, the map
+        map.putInt(at + NAME_OFFSET, nameOffset);
+        map.putInt(at + NAME_LENGTH, nameBytes.length);
+        map.force(); // a new profile must not be forgotten
+        return entry;
+    }
+
+    /**
+     * Appends the bytes to the heap, growing the file first if needed.
+     *
+     * @return Offset of the bytes in the heap.
+     */
+    private int putHeap(byte[] bytes) throws IOException {
+        int heapSize = map.getInt(HEAP_SIZE);
+        if (heapSize + bytes.length > map.getInt(HEAP_CAPACITY)) {
+            grow(bytes.length);
+        }
+        ByteBuffer heap = map.duplicate();
+        heap.position(heapOffset() + heapSize);
+        heap.put(bytes);
+        map.putInt(HEAP_SIZE, heapSize + bytes.length);
+        return heapSize;
+    }
+
+    /**
+     * Rewrites the index into a file with twice the room (or more, for a long string), then renames it over the old
+     * one.
+     */
+    private void grow(int stringLength) throws IOException {
+        int count = map.getInt(COUNT);
+        int heapSize = map.getInt(HEAP_SIZE);
+        int capacity = map.getInt(CAPACITY) * 2;
+        int heapCapacity = Math.max(map.getInt(HEAP_CAPACITY) * 2, heapSize + stringLength);
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        MappedByteBuffer grown = createFile(temp, capacity, heapCapacity);
+        ByteBuffer entries = map.duplicate();
+        entries.position(HEADER_BYTES);
+        entries.limit(entryOffset(count));
+        grown.position(HEADER_BYTES);
+        grown.put(entries);
+        ByteBuffer names = map.duplicate();
+        names.position(heapOffset());
+        names.limit(heapOffset() + heapSize);
+        grown.position(HEADER_BYTES + capacity * ENTRY_BYTES);
+        grown.put(names);
+        grown.putInt(COUNT, count);
+        grown.putInt(HEAP_SIZE, heapSize);
+        grown.force();
+
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        map = grown;
+    }
+
+    private Summary summary(int entry) {
+        int at = entryOffset(entry);
+        return new Summary(nameAt(entry), fileAt(entry), map.getLong(at + LOCATION), map.getLong(at + LAST_MODIFIED),
+                map.getInt(at + HEALTH), map.getInt(at + MAX_HEALTH), map.getInt(at + GOLD),
+                map.getInt(at + DECK_SIZE), map.getDouble(at + DIFFICULTY));
+    }
+
+    private String nameAt(int entry) {
+        int at = entryOffset(entry);
+        return heapString(map.getInt(at + NAME_OFFSET), map.getInt(at + NAME_LENGTH));
+    }
+
+    /**
+     * @return The entry's file name, or null if none was given.
+     */
+    private String fileAt(int entry) {
+        int at = entryOffset(entry);
+        int length = map.getInt(at + FILE_LENGTH);
+        return (length == 0) ? null : heapString(map.getInt(at + FILE_OFFSET), length);
+    }
+
+    private String heapString(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer heap = map.duplicate();
+        heap.position(heapOffset() + offset);
+        heap.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int entryOffset(int entry) {
+        return HEADER_BYTES + entry * ENTRY_BYTES;
+    }
+
+    private int heapOffset() {
+        return HEADER_BYTES + map.getInt(CAPACITY) * ENTRY_BYTES;
+    }
+
+    private static int fileSize(int capacity, int heapCapacity) {
+        return HEADER_BYTES + capacity * ENTRY_BYTES + heapCapacity;
+    }
+
+    private static MappedByteBuffer mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+    }
+
+    private static MappedByteBuffer createFile(Path path, int capacity, int heapCapacity) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity, heapCapacity));
+        }
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        map.putInt(CAPACITY, capacity);
+        map.putInt(HEAP_CAPACITY, heapCapacity);
+        return map;
+    }
+
+    /**
+     * @return 64-bit FNV-1a hash of the name's UTF-8 bytes. Stable across runs, unlike String.hashCode's 32 bits.
+     */
+    static long hash(String name) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * What the index knows about one profile.
+     */
+    public static final class Summary {
+        private final String name;
+        private final String file;
+        private final long location;
+        private final long lastModified;
+        private final int health;
+        private final int maxHealth;
+        private final int gold;
+        private final int deckSize;
+        private final double difficulty;
+
+        Summary(String name, String file, long location, long lastModified, int health, int maxHealth, int gold,
+                int deckSize, double difficulty) {
+            this.name = name;
+            this.file = file;
+            this.location = location;
+            this.lastModified = lastModified;
+            this.health = health;
+            this.maxHealth = maxHealth;
+            this.gold = gold;
+            this.deckSize = deckSize;
+            this.difficulty = difficulty;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Name of the file the ProfileStore keeps the save in, or null if it did not give one.
+         */
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * @return Where in its file the ProfileStore keeps the save, or -1.
+         */
+        public long getLocation() {
+            return location;
+        }
+
+        /**
+         * @return When the profile was last saved, in milliseconds since the epoch.
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public int getHealth() {
+            return health;
+        }
+
+        public int getMaxHealth() {
+            return maxHealth;
+        }
+
+        public int getGold() {
+            return gold;
+        }
+
+        public int getDeckSize() {
+            return deckSize;
+        }
+
+        public double getDifficulty() {
+            return difficulty;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + health + "/" + maxHealth + " HP, " + gold + " gold, " + deckSize + " cards)";
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Where player profiles (SaveStates) are kept between sessions.
+ * <p>
+ * The backend is chosen with the system property knightdeck.profileStore: "file" (the default) keeps one file per
+ * player, "segment" keeps every player in a single append-only log. Implementations must be safe to call from
+ * several threads.
+ */
+public interface ProfileStore {
+    String BACKEND_PROPERTY = "knightdeck.profileStore"; // system property choosing the backend
+
+    /**
+     * @param name Case-sensitive name of the player.
+     * @return The player's latest save, or null if the player has never saved.
+     * @throws IOException if the save exists but cannot be read.
+     */
+    SaveState load(String name) throws IOException;
+
+    /**
+     * Stores the save, replacing the player's previous one. Blocks until the save is durable.
+     *
+     * @param save Save to store.
+     * @throws IOException if the save cannot be written.
+     */
+    void store(SaveState save) throws IOException;
+
+    /**
+     * Answers from the store's ProfileIndex, without opening any save.
+     *
+     * @param name Case-sensitive name of the player.
+     * @return True iff the player has saved before.
+     */
+    boolean exists(String name);
+
+    /**
+     * Answers from the store's ProfileIndex, without opening any save.
+     *
+     * @return Summaries of every stored profile, ordered by name.
+     */
+    List<ProfileIndex.Summary> listProfiles();
+
+    /**
+     * Opens the backend named by the knightdeck.profileStore system property.
+     *
+     * @param directory Directory holding the saves.
+     * @return The profile store.
+     * @throws IOException if the store cannot be opened.
+     * @throws IllegalArgumentException if the property names an unknown backend.
+     */
+    static ProfileStore fromSystemProperty(Path directory) throws IOException {
+        String backend = System.getProperty(BACKEND_PROPERTY, "file");
+        switch (backend) {
+            case "file":
+                return new FileProfileStore(directory);
+            case "segment":
+                return new SegmentProfileStore(directory.resolve(SegmentProfileStore.DEFAULT_FILE_NAME));
+            default:
+                throw new IllegalArgumentException("Unknown profile store " + backend);
+        }
+    }
+}
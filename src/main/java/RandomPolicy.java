@@ -0,0 +1,28 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Plays uniformly random affordable cards against uniformly random enemies until it runs out of action points.
+ * Useful as a lower bound when comparing other policies. Draws from the battle's random stream, so its choices are
+ * reproducible from the battle's seed.
+ */
+public class RandomPolicy implements PlayerPolicy {
+
+    @Override
+    public Move chooseMove(BattleManager battle, Player player) {
+        List<Card> playable = new ArrayList<>();
+        for (Card card : player.getActionDeck()) {
+            if (card.getCost() <= player.getActionPoints()) {
+                playable.add(card);
+            }
+        }
+        if (playable.isEmpty()) {
+            return null;
+        }
+
+        SplittableRandom random = battle.getRandom();
+        List<Enemy> enemies = battle.getEnemies();
+        return new Move(playable.get(random.nextInt(playable.size())), enemies.get(random.nextInt(enemies.size())));
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Replays every recorded battle in a directory, in parallel, and reports each one that does not reach its recorded
+ * outcome, e.g. because a change to the battle code or the catalog made the same commands play out differently.
+ * <p>
+ * Record battles by setting GameModel.REPLAY_DIRECTORY_PROPERTY, or with BattleSimulator --record, then run e.g.
+ * <pre>
+ *   java ReplayVerifier replays --threads 8
+ * </pre>
+ * Prints "file: reason" for every divergence, then a summary. Exits with status 1 if any replay diverged.
+ */
+public class ReplayVerifier {
+
+    /**
+     * Replays a single file.
+     *
+     * @param path Replay file.
+     * @param wins Incremented if the battle was recorded as won.
+     * @return null if it replays to its recorded outcome, otherwise the reason it does not.
+     */
+    private static String verify(Path path, AtomicLong wins) {
+        BattleReplay replay;
+        try {
+            replay = BattleReplay.read(path);
+        } catch (IOException e) {
+            return "unreadable: " + e.getMessage();
+        }
+        if (replay.getOutcome().getResult() == BattleReplay.Result.WON) {
+            wins.incrementAndGet();
+        }
+        return replay.verify();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Usage: ReplayVerifier directory [--threads N]");
+        }
+        Path directory = Paths.get(args[0]);
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        new GameModel(); // loads the cards and enemies
+
+        AtomicLong replays = new AtomicLong();
+        AtomicLong wins = new AtomicLong();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        List<String> divergences;
+        try (Stream<Path> files = Files.list(directory)) {
+            // A parallel stream runs on the pool of the task that starts it, so this runs on the given threads.
+            divergences = pool.submit(() -> files
+                    .filter(path -> path.getFileName().toString().endsWith(BattleReplay.FILE_EXTENSION))
+                    .parallel()
+                    .map(path -> {
+                        replays.incrementAndGet();
+                        String reason = verify(path, wins);
+                        return (reason != null) ? path.getFileName() + ": " + reason : null;
+                    })
+                    .filter(reason -> reason != null)
+                    .collect(Collectors.toList())).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause(); // listing the directory failed
+            }
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        for (String divergence : divergences) {
+            System.out.println(divergence);
+        }
+        System.out.printf("%d replays, %d won, %d diverged%n", replays.get(), wins.get(), divergences.size());
+        System.out.printf("%.1f ms (%.0f replays/s)%n", elapsed / 1e6, replays.get() / (elapsed / 1e9));
+        if (!divergences.isEmpty()) {
+            System.exit(1);
+        }
+    }
+}
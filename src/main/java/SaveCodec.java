@@ -0,0 +1,312 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes SaveStates, in a compact versioned binary format or as JSON for export.
+ * <p>
+ * Binary format, version 1, all numbers big-endian:
+ * <pre>
+ *   int    magic ("KDSV")
+ *   short  version
+ *   string name
+ *   int    health, maxHealth, maxActionPoints, gold, drawSize
+ *   double difficulty
+ *   short  number of distinct cards in the deck
+ *   then for each distinct card, in deck order: string name, short count
+ * </pre>
+ * Strings are a short byte length followed by UTF-8. The deck is stored as counts, so a starting deck takes about a
+ * hundred bytes. Cards are stored by name rather than by id: ids depend on the order cards were loaded in, so a card
+ * can get another id in another process once a card is added.
+ */
+public final class SaveCodec {
+    private static final int MAGIC = 0x4B445356; // "KDSV"
+    private static final short VERSION = 1;
+
+    private SaveCodec() {
+    }
+
+    /**
+     * Encodes the save state in the current binary format.
+     *
+     * @param save Save state to encode.
+     * @return Buffer holding the encoding, positioned at 0.
+     */
+    public static ByteBuffer encode(SaveState save) {
+        byte[] name = save.name.getBytes(StandardCharsets.UTF_8);
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String card : save.deck) {
+            counts.merge(card, 1, Integer::sum);
+        }
+        List<byte[]> cardNames = new ArrayList<>(counts.size());
+        int size = 4 + 2 + 2 + name.length + 5 * 4 + 8 + 2;
+        for (String card : counts.keySet()) {
+            byte[] cardName = card.getBytes(StandardCharsets.UTF_8);
+            cardNames.add(cardName);
+            size += 2 + cardName.length + 2;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        putString(buffer, name);
+        buffer.putInt(save.health);
+        buffer.putInt(save.maxHealth);
+        buffer.putInt(save.maxActionPoints);
+        buffer.putInt(save.gold);
+        buffer.putInt(save.drawSize);
+        buffer.putDouble(save.difficulty);
+        buffer.putShort(toShort(counts.size()));
+        int i = 0;
+        for (int count : counts.values()) {
+            putString(buffer, cardNames.get(i++));
+            buffer.putShort(toShort(count));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes a save state from its binary format.
+     *
+     * @param buffer Buffer positioned at the start of the encoding.
+     * @return The save state.
+     * @throws IOException if the buffer is not a save, or is a save from a newer version of the game.
+     */
+    public static SaveState decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a save file");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported save version " + version);
+            }
+            String name = getString(buffer);
+            int health = buffer.getInt();
+            int maxHealth = buffer.getInt();
+            int maxActionPoints = buffer.getInt();
+            int gold = buffer.getInt();
+            int drawSize = buffer.getInt();
+            double difficulty = buffer.getDouble();
+            int distinctCards = Short.toUnsignedInt(buffer.getShort());
+            List<String> deck = new ArrayList<>();
+            for (int i = 0; i < distinctCards; i++) {
+                String card = getString(buffer);
+                int count = Short.toUnsignedInt(buffer.getShort());
+                for (int j = 0; j < count; j++) {
+                    deck.add(card);
+                }
+            }
+            return new SaveState(name, health, maxHealth, maxActionPoints, gold, deck, difficulty, drawSize);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated save file", e);
+        }
+    }
+
+    /**
+     * Reads just the player's name from a save's binary format, without decoding the rest.
+     *
+     * @param buffer Buffer positioned at the start of the encoding. Its position is left unchanged.
+     * @return The player's name.
+     * @throws IOException if the buffer is not a save, or is a save from a newer version of the game.
+     */
+    public static String decodeName(ByteBuffer buffer) throws IOException {
+        ByteBuffer header = buffer.duplicate();
+        try {
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a save file");
+            }
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported save version " + version);
+            }
+            return getString(header);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated save file", e);
+        }
+    }
+
+    /**
+     * Writes the save state to the given file in binary, replacing it atomically. The save is written to a temporary
+     * file next to it, forced to disk, then renamed over it, so the file always holds either the old save or the new
+     * one in full.
+     *
+     * @param save Save state to write.
+     * @param path File to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(SaveState save, Path path) throws IOException {
+        ByteBuffer buffer = encode(save);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a save state from the given binary file.
+     *
+     * @param path File to read.
+     * @return The save state.
+     * @throws IOException if the file cannot be read or is not a valid save.
+     */
+    public static SaveState read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Save file too large");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Writes the save state as pretty-printed JSON, the format saves used before the binary one. Written field by
+     * field with a JsonWriter; the output is the same as Gson's pretty printing of a SaveState.
+     *
+     * @param save   Save state to write.
+     * @param writer Writer to write to. Not closed.
+     * @throws IOException if the writer fails.
+     */
+    public static void writeJson(SaveState save, Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+        json.setHtmlSafe(true);
+        json.beginObject();
+        if (save.name != null) {
+            json.name("name").value(save.name);
+        }
+        json.name("health").value(save.health);
+        json.name("maxHealth").value(save.maxHealth);
+        json.name("maxActionPoints").value(save.maxActionPoints);
+        json.name("gold").value(save.gold);
+        if (save.deck != null) {
+            json.name("deck").beginArray();
+            for (String card : save.deck) {
+                json.value(card);
+            }
+            json.endArray();
+        }
+        json.name("difficulty").value(save.difficulty);
+        json.name("drawSize").value(save.drawSize);
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Reads a save state from JSON with a JsonReader, accepting what Gson accepted: keys in any order, unknown keys
+     * are skipped, and missing or null values leave a field at 0 or null.
+     *
+     * @param reader Reader to read from. Not closed.
+     * @return The save state, or null if the reader is empty.
+     * @throws IOException if the JSON is malformed or cannot be read.
+     * @throws IllegalStateException if the JSON does not have the shape of a save.
+     */
+    public static SaveState readJson(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        json.setLenient(true);
+        try {
+            json.peek();
+        } catch (EOFException e) {
+            return null;
+        }
+        String name = null;
+        int health = 0;
+        int maxHealth = 0;
+        int maxActionPoints = 0;
+        int gold = 0;
+        List<String> deck = null;
+        double difficulty = 0;
+        int drawSize = 0;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (key) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "health":
+                    health = json.nextInt();
+                    break;
+                case "maxHealth":
+                    maxHealth = json.nextInt();
+                    break;
+                case "maxActionPoints":
+                    maxActionPoints = json.nextInt();
+                    break;
+                case "gold":
+                    gold = json.nextInt();
+                    break;
+                case "deck":
+                    deck = CatalogCodec.readStrings(json);
+                    break;
+                case "difficulty":
+                    difficulty = json.nextDouble();
+                    break;
+                case "drawSize":
+                    drawSize = json.nextInt();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        return new SaveState(name, health, maxHealth, maxActionPoints, gold, deck, difficulty, drawSize);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort(toShort(bytes.length));
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static short toShort(int value) {
+        if (value < 0 || value > 0xFFFF) {
+            throw new IllegalArgumentException("Value does not fit in a save file: " + value);
+        }
+        return (short) value;
+    }
+}
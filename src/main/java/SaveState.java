@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -31,12 +32,38 @@ public class SaveState {
     }
 
     /**
-     * Creates a new Player from this save state representation
+     * Creates a save state from its fields. Used when decoding saves.
+     */
+    SaveState(String name, int health, int maxHealth, int maxActionPoints, int gold, List<String> deck,
+              double difficulty, int drawSize) {
+        this.name = name;
+        this.health = health;
+        this.maxHealth = maxHealth;
+        this.maxActionPoints = maxActionPoints;
+        this.gold = gold;
+        this.deck = deck;
+        this.difficulty = difficulty;
+        this.drawSize = drawSize;
+    }
+
+    /**
+     * Creates a new Player from this save state representation. Cards the catalog no longer has, or that are not
+     * player cards, are left out of the deck.
      *
      * @return new Player
      */
     public Player constructPlayer() {
-        List<Card> cardDeck = deck.stream().map(CardFactory::getCard).collect(Collectors.toList());
+        int[] cardDeck = new int[deck.size()];
+        int size = 0;
+        for (String cardName : deck) {
+            Card card = CardFactory.getCard(cardName);
+            if (card == null || !card.isPlayerCard()) {
+                System.err.println("Save of " + name + " has unknown card " + cardName + ", which was left out");
+                continue;
+            }
+            cardDeck[size++] = card.getId();
+        }
+        cardDeck = Arrays.copyOf(cardDeck, size);
         Player player = new Player(name, maxHealth, maxActionPoints, cardDeck, drawSize);
         player.addGold(gold);
         player.setHealth(health);
@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes saves on a background thread, so the thread asking for a save never waits on the disk.
+ * <p>
+ * Saves of the same player that pile up while the writer is busy are collapsed into the latest one, which is then
+ * handed to the ProfileStore. Pending saves are flushed when the JVM shuts down normally. A save that fails to be
+ * written, with an IOException or a RuntimeException, is logged and dropped, so one bad save does not stop the others.
+ */
+public final class SaveWriter {
+    private static final long FLUSH_POLL_MILLIS = 100; // how often flush checks that the writer thread is alive
+    private final ProfileStore store; // where the saves end up
+    private final Map<String, SaveState> pending = new LinkedHashMap<>(); // latest unwritten save of each player, guarded by this
+    private final Thread thread; // the writer thread
+
+    /**
+     * Constructor. Starts the writer thread.
+     *
+     * @param store Where to write the saves.
+     */
+    public SaveWriter(ProfileStore store) {
+        this.store = store;
+        thread = new Thread(this::run, "save-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "save-writer-flush"));
+    }
+
+    /**
+     * Queues a save to be written, replacing any save of the same player still waiting. Returns immediately.
+     *
+     * @param save Save state to write. Must not be modified afterwards.
+     */
+    public synchronized void submit(SaveState save) {
+        pending.put(save.name, save);
+        notifyAll();
+    }
+
+    /**
+     * @param name Name of the player.
+     * @return The player's save waiting to be written, or null if there is none.
+     */
+    public synchronized SaveState getPending(String name) {
+        return pending.get(name);
+    }
+
+    /**
+     * Blocks until every pending save has been written, or the writer thread has died and never will write them.
+     */
+    public synchronized void flush() {
+        boolean interrupted = false;
+        while (!pending.isEmpty() && thread.isAlive()) {
+            try {
+                wait(FLUSH_POLL_MILLIS); // wakes up to notice if the writer thread died
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (!pending.isEmpty()) {
+            System.err.println("Save writer stopped; " + pending.size() + " saves were not written");
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes pending saves forever, one at a time.
+     */
+    private void run() {
+        while (true) {
+            String name;
+            SaveState save;
+            synchronized (this) {
+                while (pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                Iterator<Map.Entry<String, SaveState>> entries = pending.entrySet().iterator();
+                Map.Entry<String, SaveState> next = entries.next();
+                name = next.getKey();
+                save = next.getValue();
+                // Leave the entry in place while writing, so getPending and flush still see it.
+            }
+
+            try {
+                store.store(save);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error saving data of " + name);
+                e.printStackTrace();
+            }
+
+            synchronized (this) {
+                // If a newer save of the same player came in during the write, it stays pending and is written next.
+                if (pending.get(name) == save) {
+                    pending.remove(name);
+                }
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps every player's profile in one append-only segment file, for servers with many players.
+ * <p>
+ * Each save is appended as a record: an int payload length, an int CRC32 of the payload, then the payload in
+ * SaveCodec's binary format. An in-memory index maps each player's name to their latest record. Opening the store
+ * rebuilds the index with one sequential scan of the file, and cuts off a torn record left at the end by a crash.
+ * <p>
+ * Older records of a player become garbage. Once the file is more than twice the size of the live records (and at
+ * least MIN_COMPACTION_BYTES), a background thread copies the live records into a fresh file and atomically renames
+ * it over the old one. Saves keep being appended while it copies.
+ * <p>
+ * A ProfileIndex next to the segment file (its name plus ".idx") keeps a summary of each player, with the offset of
+ * their latest record, so profiles can be listed without decoding any record. Opening the store decodes only the
+ * records the index has not seen yet.
+ */
+public class SegmentProfileStore implements ProfileStore, Closeable {
+    public static final String DEFAULT_FILE_NAME = "profiles.seg";
+    public static final long MIN_COMPACTION_BYTES = 1 << 20; // smaller files are never compacted
+    private static final int HEADER_BYTES = 8; // payload length and CRC32
+    private static final int SCAN_BUFFER_BYTES = 1 << 16;
+
+    private final Path path;
+    private final ProfileIndex profiles; // summary and record offset of each player
+    private final AtomicBoolean compacting = new AtomicBoolean(); // true while a compaction is copying records
+
+    // Guarded by this.
+    private FileChannel channel;
+    private Map<String, Location> index; // latest record of each player
+    private long size; // end of the last complete record
+    private long liveBytes; // total size of the records in the index
+
+    /**
+     * Opens the segment file, creating it if needed, and rebuilds the index from it.
+     *
+     * @param path Segment file.
+     * @throws IOException if the file cannot be opened or read.
+     */
+    public SegmentProfileStore(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        index = new HashMap<>();
+        size = scan(channel, index);
+        if (size < channel.size()) {
+            channel.truncate(size); // a record torn by a crash
+        }
+        for (Location location : index.values()) {
+            liveBytes += location.length;
+        }
+
+        profiles = new ProfileIndex(path.resolveSibling(path.getFileName() + ".idx"));
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            ProfileIndex.Summary summary = profiles.get(entry.getKey());
+            if (summary == null || summary.getLocation() != entry.getValue().offset) {
+                profiles.put(read(entry.getValue()), entry.getValue().offset, System.currentTimeMillis());
+            }
+        }
+        profiles.force();
+    }
+
+    @Override
+    public synchronized SaveState load(String name) throws IOException {
+        Location location = index.get(name);
+        return (location == null) ? null : read(location);
+    }
+
+    @Override
+    public void store(SaveState save) throws IOException {
+        ByteBuffer payload = SaveCodec.encode(save);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.remaining());
+        record.putInt(payload.remaining());
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+
+        synchronized (this) {
+            Location location = new Location(size, record.remaining());
+            writeFully(channel, record, size);
+            channel.force(false);
+            size += location.length;
+            Location old = index.put(save.name, location);
+            liveBytes += location.length - ((old == null) ? 0 : old.length);
+            profiles.put(save, location.offset, System.currentTimeMillis());
+        }
+        maybeCompactInBackground();
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return profiles.contains(name);
+    }
+
+    @Override
+    public List<ProfileIndex.Summary> listProfiles() {
+        return profiles.list();
+    }
+
+    /**
+     * @return The number of players with a profile.
+     */
+    public synchronized int getProfileCount() {
+        return index.size();
+    }
+
+    /**
+     * @return The size of the segment file in bytes.
+     */
+    public synchronized long getFileSize() {
+        return size;
+    }
+
+    /**
+     * @return The total size of the latest record of every player, in bytes.
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Starts a compaction on a background thread if the file is mostly garbage and none is running yet.
+     */
+    private void maybeCompactInBackground() {
+        synchronized (this) {
+            if (size < MIN_COMPACTION_BYTES || size <= 2 * liveBytes) {
+                return;
+            }
+        }
+        if (compacting.get()) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("Error compacting " + path);
+                e.printStackTrace();
+            }
+        }, "profile-compaction");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Rewrites the segment file with only the latest record of every player. Does nothing if a compaction is already
+     * running. Records are copied without holding the store's lock, apart from those appended during the copy.
+     *
+     * @throws IOException if the new file cannot be written. The old file is left as it was.
+     */
+    public void compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        try (FileChannel target = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            FileChannel source;
+            List<Map.Entry<String, Location>> live;
+            long copiedUpTo;
+            synchronized (this) {
+                source = channel;
+                live = new ArrayList<>(index.size());
+                for (Map.Entry<String, Location> entry : index.entrySet()) {
+                    // Copies, since stores replace the values of the index's own entries.
+                    live.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+                }
+                copiedUpTo = size;
+            }
+
+            // Copy in file order, so the old file is read sequentially.
+            live.sort((a, b) -> Long.compare(a.getValue().offset, b.getValue().offset));
+            Map<String, Location> compacted = new HashMap<>();
+            for (Map.Entry<String, Location> entry : live) {
+                compacted.put(entry.getKey(), copy(source, entry.getValue(), target));
+            }
+
+            synchronized (this) {
+                // Catch up with the records appended while copying. Records they replace stay behind as garbage.
+                for (Map.Entry<String, Location> entry : index.entrySet()) {
+                    if (entry.getValue().offset >= copiedUpTo) {
+                        compacted.put(entry.getKey(), copy(source, entry.getValue(), target));
+                    }
+                }
+                target.force(true);
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                source.close();
+                index = compacted;
+                for (Map.Entry<String, Location> entry : compacted.entrySet()) {
+                    profiles.relocate(entry.getKey(), entry.getValue().offset);
+                }
+                profiles.force();
+                size = channel.size();
+                liveBytes = 0;
+                for (Location location : compacted.values()) {
+                    liveBytes += location.length;
+                }
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+            compacting.set(false);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+        profiles.close();
+    }
+
+    /**
+     * Reads and decodes the record at the given location. The caller must hold the lock.
+     */
+    private SaveState read(Location location) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(location.length - HEADER_BYTES);
+        readFully(channel, payload, location.offset + HEADER_BYTES);
+        payload.flip();
+        return SaveCodec.decode(payload);
+    }
+
+    /**
+     * Appends a record from the source file to the end of the target file.
+     *
+     * @return Location of the record in the target file.
+     */
+    private static Location copy(FileChannel source, Location location, FileChannel target) throws IOException {
+        long offset = target.position();
+        long copied = 0;
+        while (copied < location.length) {
+            copied += source.transferTo(location.offset + copied, location.length - copied, target);
+        }
+        return new Location(offset, location.length);
+    }
+
+    /**
+     * Reads every complete, intact record of the file into the index, in order.
+     *
+     * @return The end of the last good record.
+     */
+    private static long scan(FileChannel channel, Map<String, Location> index) throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+        buffer.limit(0);
+        long bufferStart = 0; // file offset of buffer position 0
+        long position = 0;
+        CRC32 crc = new CRC32();
+
+        while (position + HEADER_BYTES <= fileSize) {
+            // Make sure the header and then the payload are in the buffer.
+            int offset = (int) (position - bufferStart);
+            if (offset + HEADER_BYTES > buffer.limit()) {
+                bufferStart = position;
+                buffer = refill(channel, buffer, position, HEADER_BYTES);
+                offset = 0;
+            }
+            int length = buffer.getInt(offset);
+            int checksum = buffer.getInt(offset + 4);
+            if (length < 0 || position + HEADER_BYTES + length > fileSize) {
+                break;
+            }
+            if (offset + HEADER_BYTES + length > buffer.limit()) {
+                bufferStart = position;
+                buffer = refill(channel, buffer, position, HEADER_BYTES + length);
+                offset = 0;
+            }
+
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(offset + HEADER_BYTES);
+            payload.limit(offset + HEADER_BYTES + length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            index.put(SaveCodec.decodeName(payload), new Location(position, HEADER_BYTES + length));
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    /**
+     * Fills a buffer with the file starting at the given offset, growing it if it cannot hold the bytes needed.
+     *
+     * @return The filled buffer, positioned at 0.
+     */
+    private static ByteBuffer refill(FileChannel channel, ByteBuffer buffer, long offset, int needed)
+            throws IOException {
+        if (buffer.capacity() < needed) {
+            buffer = ByteBuffer.allocate(needed);
+        }
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Where a record lives in the segment file.
+     */
+    private static final class Location {
+        final long offset; // offset of the record's header
+        final int length; // length of the record, header included
+
+        Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
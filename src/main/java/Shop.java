@@ -1,68 +1,48 @@
 import java.util.*;
 
 /**
- * This manages the player's actions when they visit the shop.
+ * This manages the player's actions when they visit the shop. Each GameModel has its own shop.
  */
 public class Shop {
-    private static Map<Card, Integer> vendorContents; // The cards which the shopkeeper will sell.
-    private static Map<Card, Integer> shadyContents; // The cards which the shady dealer will sell.
-    private static boolean visitable = false;
+    static final List<String> SHADY_CARDS = Collections.unmodifiableList(Arrays.asList("Strength Potion",
+            "Motivational Photo", "Relentless Beatdown")); // the cards the shady dealer always sells
+    private static final int[] SHADY_MIN_PRICES = {5, 5, 10}; // the lowest price of each of SHADY_CARDS
 
-    /**
-     * Holds the shop.
-     */
-    private static class ShopHolder {
-        private static final Shop INSTANCE = new Shop();
-    }
-
-    /**
-     * @return The current instance of the shop.
-     */
-    public static Shop getInstance() {
-        return visitable ? ShopHolder.INSTANCE : null;
-    }
-
-    /**
-     * Allows the player to visit the shop.
-     */
-    public static void setVisitable() {
-        visitable = true;
-    }
+    private Stock vendorContents; // The cards which the shopkeeper will sell.
+    private Stock shadyContents; // The cards which the shady dealer will sell.
 
     /**
      * Refreshes the content in the shops.
+     *
+     * @param random The random stream to choose the cards and prices with.
      */
-    public static void refreshContents() {
-        vendorContents = new HashMap<>();
-        Set<Integer> alreadySeen = new HashSet<>();
-        Random random = new Random();
-        for (int i = 0; i < 8; i++) {
-            int randomCard = random.nextInt(CardFactory.getPlayerCards().size());
-            while (alreadySeen.contains(randomCard)) {
-                randomCard = random.nextInt(CardFactory.getPlayerCards().size());
-            }
-            alreadySeen.add(randomCard);
-            int j = 0;
-            for (Card card : CardFactory.getPlayerCards()) {
-                if (j == randomCard) {
-                    vendorContents.put(card, (random.nextInt(1 + (card.getDamage() * card.getHits() + card.getDefense() * 3 + 2 * card.getShield()) / 2)) + ((card.getDamage() * card.getHits() + card.getDefense() + card.getShield()) / 2) + 5);
-                    break;
-                }
-                j++;
-            }
+    public void refreshContents(SplittableRandom random) {
+        Catalog catalog = Catalog.getCurrent();
+        vendorContents = new Stock(catalog);
+        Card[] playerCards = catalog.getPlayerCards().toArray(new Card[0]);
+        // Partial Fisher-Yates: the first 8 slots end up holding 8 distinct random cards.
+        for (int i = 0; i < Math.min(8, playerCards.length); i++) {
+            int j = i + random.nextInt(playerCards.length - i);
+            Card card = playerCards[j];
+            playerCards[j] = playerCards[i];
+            playerCards[i] = card;
+            vendorContents.put(card, (random.nextInt(1 + (card.getDamage() * card.getHits() + card.getDefense() * 3 + 2 * card.getShield()) / 2)) + ((card.getDamage() * card.getHits() + card.getDefense() + card.getShield()) / 2) + 5);
+        }
+        shadyContents = new Stock(catalog);
+        for (int i = 0; i < SHADY_CARDS.size(); i++) {
+            shadyContents.put(catalog.getCard(SHADY_CARDS.get(i)), random.nextInt(10) + SHADY_MIN_PRICES[i]);
         }
-        shadyContents = new HashMap<>();
-        shadyContents.put(CardFactory.getCard("Strength Potion"), (int) (Math.random() * 10) + 5);
-        shadyContents.put(CardFactory.getCard("Motivational Photo"), (int) (Math.random() * 10) + 5);
-        shadyContents.put(CardFactory.getCard("Relentless Beatdown"), (int) (Math.random() * 10) + 10);
     }
 
     /**
      * The driver and menu of the shop.
+     *
+     * @param player The player visiting the shop.
+     * @param random The random stream to stock the shop with if it has never been stocked.
      */
-    public void enter(Player player) {
+    public void enter(Player player, SplittableRandom random) {
         if (vendorContents == null) {
-            refreshContents();
+            refreshContents(random);
         }
         System.out.println("Vendor: Welcome to my shop!");
         textWait();
@@ -94,14 +74,14 @@ public class Shop {
      * Driver for when the player visits the vendor.
      */
     private void visitVendor(Player player) {
-        if (vendorContents.keySet().isEmpty()) {
+        if (vendorContents.isEmpty()) {
             System.out.println("Vendor: Sorry, I'm out of goods at the moment. Please check back later.");
             return;
         }
         System.out.println("Vendor: Hello, take a look at my wares!");
         textWait();
-        for (Card card : vendorContents.keySet()) {
-            System.out.println("\t" + vendorContents.get(card) + " gold: " + card.getDescription(player));
+        for (Card card : vendorContents.getCards()) {
+            System.out.println("\t" + vendorContents.getPrice(card) + " gold: " + card.getDescription(player));
         }
         textWait();
         System.out.println("Vendor: All sales final! No returns!");
@@ -123,9 +103,9 @@ public class Shop {
                 // Print error messages if card is illegal
                 if (card == null) {
                     System.out.println("Vendor: Invalid card.");
-                } else if (!vendorContents.containsKey(card)) {
+                } else if (!vendorContents.contains(card)) {
                     System.out.println("Vendor: I'm not selling any card with that name.");
-                } else if (player.getGold() < vendorContents.get(card)) {
+                } else if (player.getGold() < vendorContents.getPrice(card)) {
                     System.out.println("You don't have enough gold.");
                 } else {
                     break;
@@ -133,19 +113,19 @@ public class Shop {
                 textWait();
             }
             buyFromSeller(player, card, vendorContents, "Vendor: Thanks for your purchase.");
-            if (vendorContents.keySet().isEmpty()) {
+            if (vendorContents.isEmpty()) {
                 System.out.println("Vendor: Sorry, I'm out of goods. Check back later!");
                 return;
             }
             System.out.println("Vendor: I still have the following cards:");
-            for (Card card1 : vendorContents.keySet()) {
-                System.out.println("\t" + vendorContents.get(card1) + " gold: " + card1.getDescription(player));
+            for (Card card1 : vendorContents.getCards()) {
+                System.out.println("\t" + vendorContents.getPrice(card1) + " gold: " + card1.getDescription(player));
             }
         }
     }
 
-    private void buyFromSeller(Player player, Card card, Map<Card, Integer> sellerContents, String sellerResponse) {
-        player.takeGold(sellerContents.get(card));
+    private void buyFromSeller(Player player, Card card, Stock sellerContents, String sellerResponse) {
+        player.takeGold(sellerContents.getPrice(card));
         player.deckAdd(card);
         sellerContents.remove(card);
         System.out.println(sellerResponse);
@@ -155,14 +135,14 @@ public class Shop {
     }
 
     private void visitShadyMerchant(Player player) {
-        if (shadyContents.keySet().isEmpty()) {
+        if (shadyContents.isEmpty()) {
             System.out.println("Shady Dealer: Can't you see that I'm busy? Please check back later!");
             return;
         }
         System.out.println("Shady Dealer: Sup. Today on the black market, we have:");
         textWait();
-        for (Card card : shadyContents.keySet()) {
-            System.out.println("\t" + shadyContents.get(card) + " gold: " + card.getDescription(player));
+        for (Card card : shadyContents.getCards()) {
+            System.out.println("\t" + shadyContents.getPrice(card) + " gold: " + card.getDescription(player));
         }
         System.out.println("\t100 gold: Mind Training [/] ActionPoints +1 Per Turn.");
         System.out.println("\t50 gold: Slight of Hand [/] Draw +1 Cards Per Turn.");
@@ -225,18 +205,18 @@ public class Shop {
                 // Print error messages if card is illegal
                 if (card == null && !response.equalsIgnoreCase("Improved Armor") && !response.equalsIgnoreCase("Slight of Hand") && !response.equalsIgnoreCase("Mind Training")) {
                     System.out.println("Shady Dealer: Invalid card.");
-                } else if (!shadyContents.containsKey(card)) {
+                } else if (!shadyContents.contains(card)) {
                     System.out.println("Shady Dealer: I'm not selling any card with that name.");
-                } else if (player.getGold() < shadyContents.get(card)) {
+                } else if (player.getGold() < shadyContents.getPrice(card)) {
                     System.out.println("Shady Dealer: You don't have enough gold.");
                 } else {
                     card = CardFactory.getCard(response);
                     // Print error messages if card is illegal
                     if (card == null) {
                         System.out.println("Shady Dealer: Invalid item.");
-                    } else if (!shadyContents.containsKey(card)) {
+                    } else if (!shadyContents.contains(card)) {
                         System.out.println("Shady Dealer: I'm not selling any item with that name.");
-                    } else if (player.getGold() < shadyContents.get(card)) {
+                    } else if (player.getGold() < shadyContents.getPrice(card)) {
                         System.out.println("Shady Dealer: You don't have enough gold.");
                     } else {
                         break;
@@ -246,13 +226,13 @@ public class Shop {
             if (card != null) {
                 buyFromSeller(player, card, shadyContents, "Shady Dealer: Dun deal.");
             }
-            if (vendorContents.keySet().isEmpty()) {
+            if (vendorContents.isEmpty()) {
                 System.out.println("Shady Dealer: Sorry, limited stock. Check back later!");
                 return;
             }
             System.out.println("Shady Dealer: I still have the following cards:");
-            for (Card card1 : shadyContents.keySet()) {
-                System.out.println(shadyContents.get(card1) + " gold: " + card1.getDescription(player));
+            for (Card card1 : shadyContents.getCards()) {
+                System.out.println(shadyContents.getPrice(card1) + " gold: " + card1.getDescription(player));
             }
         }
     }
@@ -260,4 +240,79 @@ public class Shop {
     private void textWait() {
         TextViewController.textWait();
     }
+
+    /**
+     * The cards a seller has on offer, stored as a price per card id. Keeps the Catalog it was stocked from, so
+     * cards a later reload adds are simply not for sale, and the cards on offer are shown as they were stocked.
+     */
+    private static class Stock {
+        private final Catalog catalog; // the catalog the stock was chosen from
+        private final int[] prices; // indexed by card id, 0 if not for sale
+        private int size; // the number of cards for sale
+
+        Stock(Catalog catalog) {
+            this.catalog = catalog;
+            prices = new int[catalog.getCardCount()];
+        }
+
+        /**
+         * Puts the card up for sale at the given price, replacing any previous price.
+         *
+         * @throws IllegalArgumentException if the card is not in the stock's catalog.
+         */
+        void put(Card card, int price) {
+            assert price > 0;
+            if (card.getId() >= prices.length) {
+                throw new IllegalArgumentException("Card " + card.getName() + " was added after the shop was stocked");
+            }
+            if (prices[card.getId()] == 0) {
+                size++;
+            }
+            prices[card.getId()] = price;
+        }
+
+        /**
+         * @return True iff the card is for sale.
+         */
+        boolean contains(Card card) {
+            return card != null && card.getId() < prices.length && prices[card.getId()] > 0;
+        }
+
+        /**
+         * @return The price of the card, which must be for sale; 0 if it is not.
+         */
+        int getPrice(Card card) {
+            assert contains(card);
+            return contains(card) ? prices[card.getId()] : 0;
+        }
+
+        /**
+         * Takes the card off sale.
+         */
+        void remove(Card card) {
+            if (contains(card)) {
+                prices[card.getId()] = 0;
+                size--;
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * @return The cards for sale, in alphabetical order.
+         */
+        List<Card> getCards() {
+            List<Card> cards = new ArrayList<>(size);
+            for (int id = 0; id < prices.length; id++) {
+                Card card = catalog.getCard(id);
+                if (prices[id] > 0 && card != null) {
+                    cards.add(card);
+                }
+            }
+            Collections.sort(cards);
+            return cards;
+        }
+    }
 }
\ No newline at end of file
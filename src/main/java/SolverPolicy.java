@@ -0,0 +1,13 @@
+/**
+ * Plays the first card of the plan TurnSolver finds for the rest of the turn. The plan is solved again before every
+ * card, which costs microseconds, so the policy needs no state of its own beyond a solver per thread.
+ */
+public class SolverPolicy implements PlayerPolicy {
+    private final ThreadLocal<TurnSolver> solvers = ThreadLocal.withInitial(TurnSolver::new);
+
+    @Override
+    public Move chooseMove(BattleManager battle, Player player) {
+        TurnSolver.Solution solution = solvers.get().solve(battle, player);
+        return solution.getMoves().isEmpty() ? null : solution.getMoves().get(0);
+    }
+}
@@ -4,6 +4,10 @@ public class TextViewController {
     private GameModel model;
     private Player player;
     private Scanner input;
+    private MonteCarloTreeSearch autoPlayer; // plays the rest of a turn when asked to; created on first use
+    private final TurnSolver hintSolver = new TurnSolver(); // finds the best plan for the turn when asked for a hint
+
+    private static final int AUTO_PLAY_MILLIS = 500; // time the auto-player may think about each card
 
     public static final int TEXT_DELAY = 100; // the text delay in milliseconds.
 
@@ -23,10 +27,18 @@ public class TextViewController {
         GameModel model = new GameModel();
 
         Scanner input = new Scanner(System.in);
+        List<ProfileIndex.Summary> profiles = GameModel.getProfiles();
+        if (!profiles.isEmpty()) {
+            System.out.println("Saved players:");
+            for (ProfileIndex.Summary profile : profiles) {
+                System.out.println("  " + profile);
+            }
+        }
         System.out.println("What is your name? ");
         System.out.print("Name> ");
         String name = input.nextLine().trim();
 
+        System.out.println(GameModel.profileExists(name) ? "Welcome back, " + name + "!" : "Welcome, " + name + "!");
         model.loadPlayer(name);
 
         TextViewController viewController = new TextViewController(model);
@@ -95,14 +107,7 @@ public class TextViewController {
                 visitHospital();
                 break;
             case 's':
-                if (Shop.getInstance() == null) {
-                    System.out.println("Shopkeepers: Sorry, we're currently sold out.");
-                    textWait();
-                    System.out.println("Shopkeepers: Could you come back in a bit? We'll have some more stock then.");
-                    textWait();
-                } else {
-                    Shop.getInstance().enter(player);
-                }
+                model.getShop().enter(player, model.getRandom());
                 break;
             case 'd':
                 System.out.println("You have the following cards:");
@@ -125,6 +130,7 @@ public class TextViewController {
      * @param battle BattleManager
      */
     private void manageBattle(BattleManager battle) {
+        battle.setEventListener(new ConsoleBattleEventListener(true));
         battle.start();
         System.out.println("=== Battle has started! ===");
         System.out.println();
@@ -146,18 +152,19 @@ public class TextViewController {
             System.out.println();
 
             // Alerts the player of the enemy's intents.
-            for (Enemy enemy : battle.getEnemyIntents().keySet()) {
-                String output = "";
-                for (int i = 0; i < battle.getEnemyIntents().get(enemy).size(); i++) {
+            for (Map.Entry<Enemy, List<Card>> intent : battle.getEnemyIntents().entrySet()) {
+                List<Card> move = intent.getValue();
+                StringBuilder output = new StringBuilder();
+                for (int i = 0; i < move.size(); i++) {
                     if (i == 0) {
-                        output += enemy.getName() + " plans to use " + battle.getEnemyIntents().get(enemy).get(i).getName();
-                    } else if (i != battle.getEnemyIntents().get(enemy).size() - 1) {
-                        output += ", " + battle.getEnemyIntents().get(enemy).get(i).getName();
+                        output.append(intent.getKey().getName()).append(" plans to use ").append(move.get(i).getName());
+                    } else if (i != move.size() - 1) {
+                        output.append(", ").append(move.get(i).getName());
                     } else {
-                        output += " and " + battle.getEnemyIntents().get(enemy).get(i).getName();
+                        output.append(" and ").append(move.get(i).getName());
                     }
                 }
-                System.out.println(output + ".");
+                System.out.println(output.append('.'));
             }
             System.out.println();
 
@@ -188,9 +195,10 @@ public class TextViewController {
 
         // Add card drops
         Set<Card> cardDrops = battle.postGame();
+        GameModel.saveReplay(battle);
         System.out.print("=== Battle has finished! ===\n");
 
-        Card cardDropChosen = handleCardDropAdding(cardDrops);
+        Card cardDropChosen = handleCardDropAdding(cardDrops, battle.getRandom());
         if (cardDropChosen != null) {
             player.deckAdd(cardDropChosen);
             System.out.println("You have added " + cardDropChosen.getName() + " to your deck.");
@@ -213,7 +221,7 @@ public class TextViewController {
                 }
             }
             System.out.println("You have " + player.getActionPoints() + " action point(s) left this turn.");
-            System.out.println("Enter the card name you want to play (e to end turn).");
+            System.out.println("Enter the card name you want to play (e to end turn, h for a hint, a to auto-play the rest of the turn).");
 
             // Card selection process
             Card cardToPlay;
@@ -224,6 +232,14 @@ public class TextViewController {
                     System.out.println("You have chosen to end your turn.");
                     return;
                 }
+                if (response.toLowerCase().equals("h")) {
+                    System.out.println("Hint: " + hintSolver.solve(battle, player));
+                    continue;
+                }
+                if (response.toLowerCase().equals("a")) {
+                    autoPlayTurn(battle);
+                    return;
+                }
 
                 cardToPlay = CardFactory.getCard(response);
                 // Print error messages if card is illegal
@@ -245,6 +261,9 @@ public class TextViewController {
                 target = enemies.get(0);
             } else {
                 System.out.println("Which enemy number do you want to target?");
+                for (Enemy enemy : enemies) {
+                    System.out.println("\t" + cardToPlay.forecast(player, enemy));
+                }
                 while (target == null) {
                     System.out.print("Enemy> ");
                     if (input.hasNextInt()) {
@@ -275,13 +294,38 @@ public class TextViewController {
         }
     }
 
+    /**
+     * Lets the auto-player play cards until it chooses to end the turn or the turn ends by itself.
+     *
+     * @param battle BattleManager
+     */
+    private void autoPlayTurn(BattleManager battle) {
+        if (autoPlayer == null) {
+            autoPlayer = new MonteCarloTreeSearch(Runtime.getRuntime().availableProcessors(), AUTO_PLAY_MILLIS, 0);
+        }
+        autoPlayer.resetStats();
+        while (player.getActionPoints() > 0 && !player.isActionDeckEmpty() && !battle.isBattleOver()) {
+            PlayerPolicy.Move move = autoPlayer.chooseMove(battle, player);
+            if (move == null) {
+                break;
+            }
+            Card card = move.getCard();
+            boolean targeted = battle.getEnemies().size() > 1 && card.getDamage() * card.getHits() != 0 && !card.isAttackAll();
+            System.out.println("You played " + card.getName() + (targeted ? " at " + move.getTarget().getName() : "") + "!");
+            battle.playerAction(card, move.getTarget());
+            textWait();
+        }
+        System.out.println("Auto-play has ended your turn: " + autoPlayer.getStats() + ".");
+    }
+
     /**
      * Lets the player choose between a few drops from the enemies who have perished on the battlefield.
      *
      * @param cardDropSet set of cards dropped by the enemies.
+     * @param random      the battle's random stream, used to pick which two drops are offered.
      * @return Card chosen by the player to add. Can be null if no card is chosen.
      */
-    private Card handleCardDropAdding(Set<Card> cardDropSet) {
+    private Card handleCardDropAdding(Set<Card> cardDropSet, SplittableRandom random) {
         if (cardDropSet.isEmpty()) {
             System.out.println("The enemies didn't drop anything...");
             return null;
@@ -300,9 +344,8 @@ public class TextViewController {
         }
 
         // Make user choose between two of the dropped cards
-        Collections.shuffle(cardDrops);
-        Card card1 = cardDrops.get(0);
-        Card card2 = cardDrops.get(1);
+        Card card1 = cardDrops.remove(random.nextInt(cardDrops.size()));
+        Card card2 = cardDrops.remove(random.nextInt(cardDrops.size()));
 
         System.out.println("After inspecting the battlefield, you discover " + card1.getName() + " (1).");
         System.out.println("\t" + card1.getDescription(player));
@@ -378,8 +421,9 @@ public class TextViewController {
                 textWait();
                 System.out.println("Cleric: It looks like you're injured pretty badly.");
                 textWait();
-                int goldToHeal = (int) Math.ceil(Math.log(player.getMaxHealth() - player.getHealth()) / Math.log(1.4));
-                if (player.getGold() >= goldToHeal) {
+                Hospital hospital = model.getHospital();
+                int goldToHeal = hospital.getHealingCost();
+                if (hospital.playerHasEnoughGold()) {
                     boolean confirmHeal = yesNoPrompt("Cleric: I can heal you all the way to full, but it'll cost you " +
                                     goldToHeal + " gold (y/n).\n\t(You have " + player.getGold() + " gold.)", "",
                             "Cleric: Sorry, I don't understand.");
@@ -388,8 +432,7 @@ public class TextViewController {
                         textWait();
                         System.out.println("\t" + "Cleric used heal!");
                         textWait();
-                        player.takeGold(goldToHeal);
-                        player.heal(player.getMaxHealth() - player.getHealth());
+                        hospital.healPlayerToFull();
                         System.out.println("\t" + player.healthStatus());
                         textWait();
                     }
@@ -0,0 +1,414 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the best sequence of cards for the rest of the player's turn, exactly.
+ * <p>
+ * A plan is scored by the health it swings in the player's favour: damage dealt to the enemies' health, plus the
+ * max health of every enemy killed (a dead enemy never attacks again), minus the damage the player will take from
+ * the enemies' intents once the turn ends. Plans that leave the player dead are ruled out unless nothing else is
+ * possible. Ties go to the shorter plan, since unplayed cards stay in hand.
+ * <p>
+ * The solver is a dynamic program over the cards played so far (a bitmask of the hand) and the damage each enemy has
+ * taken after defense. Everything else follows from those two: the action points left and the strength, defense and
+ * shield the player has built up only depend on which cards were played, and an enemy's shield and health only depend
+ * on its total damage taken. Each state is therefore a single long, memoized in a LongIntMap.
+ * <p>
+ * Not thread-safe; each thread needs its own solver. The memo table is reused between solves.
+ */
+public class TurnSolver {
+    public static final int MAX_HAND_SIZE = 16; // larger hands only consider their first MAX_HAND_SIZE cards
+    public static final int MAX_ENEMIES = 3; // the state packs each enemy's damage taken into 16 of 48 bits
+    private static final int DAMAGE_BITS = 16;
+    private static final int DAMAGE_LIMIT = (1 << DAMAGE_BITS) - 2; // damage taken is capped below this
+    private static final int DEATH_PENALTY = 1_000_000; // ranks every plan that survives above every one that does not
+    private static final int UNSOLVED = Integer.MIN_VALUE;
+
+    private final LongIntMap memo = new LongIntMap();
+
+    // The problem being solved, filled in by solve.
+    private int handSize;
+    private final Card[] hand = new Card[MAX_HAND_SIZE];
+    private final int[] sameCardBefore = new int[MAX_HAND_SIZE]; // index of the previous copy of the card, or -1
+    private int enemyCount;
+    private final Enemy[] enemies = new Enemy[MAX_ENEMIES];
+    private final int[] enemyDefense = new int[MAX_ENEMIES];
+    private final int[] enemyShield = new int[MAX_ENEMIES];
+    private final int[] enemyHealth = new int[MAX_ENEMIES];
+    private final int[] enemyCapacity = new int[MAX_ENEMIES]; // shield + health: the damage that kills the enemy
+    private final int[] enemyKillBonus = new int[MAX_ENEMIES];
+    private final int[][] enemyAttacks = new int[MAX_ENEMIES][]; // pairs of (damage per hit, hits) the enemy intends
+    private int playerHealth;
+    private int playerDefense;
+    private int playerShield;
+
+    /**
+     * Solves the rest of the player's current turn.
+     *
+     * @param battle Battle in which it is the player's turn and the enemies have calculated their moves.
+     * @param player The player in the battle.
+     * @return The best plan.
+     * @throws IllegalArgumentException if there are more than MAX_ENEMIES enemies.
+     */
+    public Solution solve(BattleManager battle, Player player) {
+        List<Enemy> alive = battle.getEnemies();
+        if (alive.size() > MAX_ENEMIES) {
+            throw new IllegalArgumentException("TurnSolver handles at most " + MAX_ENEMIES + " enemies");
+        }
+
+        handSize = 0;
+        for (Card card : player.getActionDeck()) {
+            if (handSize == MAX_HAND_SIZE) {
+                break;
+            }
+            hand[handSize] = card;
+            sameCardBefore[handSize] = -1;
+            for (int i = handSize - 1; i >= 0; i--) {
+                if (hand[i] == card) {
+                    sameCardBefore[handSize] = i;
+                    break;
+                }
+            }
+            handSize++;
+        }
+
+        enemyCount = alive.size();
+        for (int e = 0; e < enemyCount; e++) {
+            Enemy enemy = alive.get(e);
+            enemies[e] = enemy;
+            enemyDefense[e] = enemy.getDefense();
+            enemyShield[e] = enemy.getShield();
+            enemyHealth[e] = enemy.getHealth();
+            enemyCapacity[e] = Math.min(enemy.getShield() + enemy.getHealth(), DAMAGE_LIMIT);
+            enemyKillBonus[e] = enemy.getMaxHealth();
+            enemyAttacks[e] = intendedAttacks(enemy);
+        }
+        playerHealth = player.getHealth();
+        playerDefense = player.getDefense();
+        playerShield = player.getShield();
+
+        memo.clear();
+        int strength = player.getStrength();
+        int actionPoints = player.getActionPoints();
+        int score = best(0, 0L, actionPoints, strength, 0, 0);
+
+        // Walk the memo table to recover the plan.
+        List<PlayerPolicy.Move> moves = new ArrayList<>();
+        int mask = 0;
+        long damage = 0;
+        int defense = 0;
+        int shield = 0;
+        int[] choice = new int[2];
+        while (bestChoice(mask, damage, actionPoints, strength, defense, shield, choice)) {
+            Card card = hand[choice[0]];
+            int target = (choice[1] < 0) ? firstAlive(damage) : choice[1];
+            moves.add(new PlayerPolicy.Move(card, enemies[target]));
+            damage = applyCard(card, choice[1], damage, strength);
+            mask |= 1 << choice[0];
+            actionPoints -= card.getCost();
+            strength += card.getStrength();
+            defense += card.getDefense();
+            shield += card.getShield();
+        }
+
+        int damageDealt = 0;
+        int kills = 0;
+        for (int e = 0; e < enemyCount; e++) {
+            int taken = damageTaken(damage, e);
+            damageDealt += Math.min(Math.max(taken - enemyShield[e], 0), enemyHealth[e]);
+            if (taken >= enemyCapacity[e]) {
+                kills++;
+            }
+        }
+        int incoming = incomingDamage(damage, defense, shield);
+        return new Solution(moves, score, damageDealt, kills, Math.min(incoming, playerHealth), memo.size());
+    }
+
+    /**
+     * @return The best score reachable from the given state. The last four arguments follow from the mask.
+     */
+    private int best(int mask, long damage, int actionPoints, int strength, int defense, int shield) {
+        long key = ((long) mask << (DAMAGE_BITS * MAX_ENEMIES)) | damage;
+        int cached = memo.get(key, UNSOLVED);
+        if (cached != UNSOLVED) {
+            return cached;
+        }
+
+        int result = score(damage, defense, shield);
+        if (anyAlive(damage)) {
+            for (int i = 0; i < handSize; i++) {
+                if (!canPlay(mask, i, actionPoints)) {
+                    continue;
+                }
+                Card card = hand[i];
+                int nextMask = mask | (1 << i);
+                int nextActionPoints = actionPoints - card.getCost();
+                int nextStrength = strength + card.getStrength();
+                int nextDefense = defense + card.getDefense();
+                int nextShield = shield + card.getShield();
+                for (int target = firstTarget(card); target < targetsEnd(card); target++) {
+                    if (target >= 0 && damageTaken(damage, target) >= enemyCapacity[target]) {
+                        continue;
+                    }
+                    long nextDamage = applyCard(card, target, damage, strength);
+                    int value = best(nextMask, nextDamage, nextActionPoints, nextStrength, nextDefense, nextShield);
+                    if (value > result) {
+                        result = value;
+                    }
+                }
+            }
+        }
+
+        memo.put(key, result);
+        return result;
+    }
+
+    /**
+     * Finds the first card and target achieving the best score from the given state, in the same order best tries
+     * them, so the plan matches the score.
+     *
+     * @param choice Receives the index of the card in hand and the target, or -1 for no particular target.
+     * @return False iff the best thing to do is to stop.
+     */
+    private boolean bestChoice(int mask, long damage, int actionPoints, int strength, int defense, int shield,
+                               int[] choice) {
+        int result = best(mask, damage, actionPoints, strength, defense, shield);
+        if (score(damage, defense, shield) == result || !anyAlive(damage)) {
+            return false;
+        }
+        for (int i = 0; i < handSize; i++) {
+            if (!canPlay(mask, i, actionPoints)) {
+                continue;
+            }
+            Card card = hand[i];
+            for (int target = firstTarget(card); target < targetsEnd(card); target++) {
+                if (target >= 0 && damageTaken(damage, target) >= enemyCapacity[target]) {
+                    continue;
+                }
+                long nextDamage = applyCard(card, target, damage, strength);
+                int value = best(mask | (1 << i), nextDamage, actionPoints - card.getCost(),
+                        strength + card.getStrength(), defense + card.getDefense(), shield + card.getShield());
+                if (value == result) {
+                    choice[0] = i;
+                    choice[1] = target;
+                    return true;
+                }
+            }
+        }
+        throw new IllegalStateException("Memo table does not match any move");
+    }
+
+    /**
+     * @return True iff card i of the hand can be played next. Copies of a card are played in hand order, so each
+     * set of cards is only searched once.
+     */
+    private boolean canPlay(int mask, int i, int actionPoints) {
+        return (mask & (1 << i)) == 0 && hand[i].getCost() <= actionPoints
+                && (sameCardBefore[i] < 0 || (mask & (1 << sameCardBefore[i])) != 0);
+    }
+
+    /**
+     * @return The first target to try for the card: -1 for cards with no particular target, otherwise enemy 0.
+     */
+    private static int firstTarget(Card card) {
+        return (card.getDamage() * card.getHits() == 0 || card.isAttackAll()) ? -1 : 0;
+    }
+
+    /**
+     * @return One past the last target to try for the card.
+     */
+    private int targetsEnd(Card card) {
+        return (firstTarget(card) < 0) ? 0 : enemyCount;
+    }
+
+    /**
+     * @return The packed damage taken after the card is played against the target (-1 for no particular target).
+     */
+    private long applyCard(Card card, int target, long damage, int strength) {
+        if (card.getDamage() * card.getHits() == 0) {
+            return damage;
+        }
+        for (int e = 0; e < enemyCount; e++) {
+            if ((target >= 0 && e != target) || damageTaken(damage, e) >= enemyCapacity[e]) {
+                continue;
+            }
+            int hitDamage = card.getDamage() + strength;
+            int dealt = Math.max((hitDamage - enemyDefense[e]) * card.getHits(), 0);
+            int taken = Math.min(damageTaken(damage, e) + dealt, enemyCapacity[e]);
+            int shift = e * DAMAGE_BITS;
+            damage = (damage & ~(0xFFFFL << shift)) | ((long) taken << shift);
+        }
+        return damage;
+    }
+
+    /**
+     * @return The damage enemy e has taken after defense, unpacked from the state.
+     */
+    private static int damageTaken(long damage, int e) {
+        return (int) (damage >>> (e * DAMAGE_BITS)) & 0xFFFF;
+    }
+
+    private boolean anyAlive(long damage) {
+        return firstAlive(damage) >= 0;
+    }
+
+    private int firstAlive(long damage) {
+        for (int e = 0; e < enemyCount; e++) {
+            if (damageTaken(damage, e) < enemyCapacity[e]) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The score of stopping in the given state.
+     */
+    private int score(long damage, int defense, int shield) {
+        int result = 0;
+        for (int e = 0; e < enemyCount; e++) {
+            int taken = damageTaken(damage, e);
+            result += Math.min(Math.max(taken - enemyShield[e], 0), enemyHealth[e]);
+            if (taken >= enemyCapacity[e]) {
+                result += enemyKillBonus[e];
+            }
+        }
+        int incoming = incomingDamage(damage, defense, shield);
+        result -= Math.min(incoming, playerHealth);
+        if (incoming >= playerHealth) {
+            result -= DEATH_PENALTY;
+        }
+        return result;
+    }
+
+    /**
+     * @return The damage the surviving enemies' intents will deal to the player, given the defense and shield the
+     * player has gained this turn.
+     */
+    private int incomingDamage(long damage, int defense, int shield) {
+        int totalDefense = playerDefense + defense;
+        int shieldLeft = playerShield + shield;
+        int total = 0;
+        for (int e = 0; e < enemyCount; e++) {
+            if (damageTaken(damage, e) >= enemyCapacity[e]) {
+                continue;
+            }
+            int[] attacks = enemyAttacks[e];
+            for (int a = 0; a < attacks.length; a += 2) {
+                // Same as Being.takeDamage.
+                int dealt = Math.max((attacks[a] - totalDefense) * attacks[a + 1], 0);
+                int absorbed = Math.min(dealt, shieldLeft);
+                shieldLeft -= absorbed;
+                total += dealt - absorbed;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Pairs of (damage per hit, hits) the enemy's intent will deal, in order. Accounts for the enemy's strength
+     * wearing off at the start of its turn and for strength gained from its own cards along the way.
+     */
+    private static int[] intendedAttacks(Enemy enemy) {
+        List<Card> intent = enemy.getMove();
+        if (intent == null) {
+            return new int[0];
+        }
+        int[] attacks = new int[2 * intent.size()];
+        int count = 0;
+        int strength = enemy.getStrength() / 2;
+        for (Card card : intent) {
+            if (card.getDamage() * card.getHits() != 0) {
+                attacks[count++] = card.getDamage() + strength;
+                attacks[count++] = card.getHits();
+            }
+            strength += card.getStrength();
+        }
+        return (count == attacks.length) ? attacks : Arrays.copyOf(attacks, count);
+    }
+
+    /**
+     * The best plan for the rest of a turn.
+     */
+    public static class Solution {
+        private final List<PlayerPolicy.Move> moves;
+        private final int score;
+        private final int damageDealt;
+        private final int kills;
+        private final int damageTaken;
+        private final int statesSearched;
+
+        Solution(List<PlayerPolicy.Move> moves, int score, int damageDealt, int kills, int damageTaken,
+                 int statesSearched) {
+            this.moves = Collections.unmodifiableList(moves);
+            this.score = score;
+            this.damageDealt = damageDealt;
+            this.kills = kills;
+            this.damageTaken = damageTaken;
+            this.statesSearched = statesSearched;
+        }
+
+        /**
+         * @return The cards to play, in order, with their targets. Empty if the turn should end now.
+         */
+        public List<PlayerPolicy.Move> getMoves() {
+            return moves;
+        }
+
+        /**
+         * @return The score of the plan. See TurnSolver.
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * @return Damage the plan deals to the enemies' health.
+         */
+        public int getDamageDealt() {
+            return damageDealt;
+        }
+
+        /**
+         * @return Number of enemies the plan kills.
+         */
+        public int getKills() {
+            return kills;
+        }
+
+        /**
+         * @return Damage the player will take from the enemies' next turn after following the plan.
+         */
+        public int getDamageTaken() {
+            return damageTaken;
+        }
+
+        /**
+         * @return Number of distinct states the solver had to evaluate.
+         */
+        public int getStatesSearched() {
+            return statesSearched;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder plan = new StringBuilder();
+            for (PlayerPolicy.Move move : moves) {
+                if (plan.length() > 0) {
+                    plan.append(", then ");
+                }
+                Card card = move.getCard();
+                plan.append(card.getName());
+                if (card.getDamage() * card.getHits() != 0 && !card.isAttackAll()) {
+                    plan.append(" at ").append(move.getTarget().getName());
+                }
+            }
+            if (plan.length() == 0) {
+                plan.append("End your turn");
+            }
+            return plan + ". (Deals " + damageDealt + " damage, kills " + kills + ", takes " + damageTaken + " damage.)";
+        }
+    }
+}